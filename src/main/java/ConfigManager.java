@@ -83,6 +83,19 @@ public class ConfigManager {
         properties.setProperty("pattern_length", "3");
         properties.setProperty("random_factor", "0.2");
         properties.setProperty("decay_factor", "0.9");
+        properties.setProperty("ai_move_budget_ms", "5");
+        
+        // History settings
+        properties.setProperty("history_store", "csv");
+        properties.setProperty("history_jdbc_url", JdbcHistoryStore.DEFAULT_URL);
+        properties.setProperty("history_fsync", "always");
+        properties.setProperty("history_queue_capacity", "1024");
+        properties.setProperty("history_retention_days", "0");
+        properties.setProperty("history_poll_millis", "2000");
+        
+        // Rating settings
+        properties.setProperty("rating_k_factor", "32");
+        properties.setProperty("rating_initial", "1500");
         
         // Paths
         properties.setProperty("resources_path", "resource/");
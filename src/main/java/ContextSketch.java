@@ -0,0 +1,159 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-memory frequency model of which move follows each recent context.
+ * Contexts of every length up to MAX_CONTEXT are keyed by rolling hashes into a
+ * count-min sketch with conservative update, and all counters are halved
+ * periodically so old habits fade. Memory stays constant however long the
+ * history gets or however many distinct patterns the player produces.
+ */
+public class ContextSketch {
+    private static final String[] MOVES = {"Rock", "Paper", "Scissors"};
+
+    /** Longest context, in moves, that the sketch tracks */
+    public static final int MAX_CONTEXT = 16;
+    private static final int DEPTH = 4;              // Hash rows; failure probability is e^-DEPTH
+    private static final int WIDTH = 2048;           // Counters per row, must be a power of two
+    private static final int DECAY_INTERVAL = 64;    // Moves between halving all counters
+    private static final double MIN_SUPPORT = 2.0;   // Observations needed before a context is trusted
+
+    private final int[][] counters = new int[DEPTH][WIDTH];
+    private final long[] contextHashes = new long[MAX_CONTEXT + 1]; // Hash of the last L moves at index L
+    private int movesSeen = 0;
+    private long totalCount = 0; // Sum of all increments since the last decay, for the error bound
+
+    /**
+     * A predicted move together with the sketch's error bound on its count
+     */
+    public static class Prediction {
+        public final String move;
+        public final int contextLength;
+        public final int count;
+        public final double errorBound;
+
+        Prediction(String move, int contextLength, int count, double errorBound) {
+            this.move = move;
+            this.contextLength = contextLength;
+            this.count = count;
+            this.errorBound = errorBound;
+        }
+    }
+
+    /**
+     * Records the next move as the successor of every context that precedes it
+     * @param move The player's move ("Rock", "Paper", or "Scissors")
+     */
+    public void recordMove(String move) {
+        int code = encode(move);
+        if (code < 0) return;
+
+        int available = Math.min(MAX_CONTEXT, movesSeen);
+        for (int length = 1; length <= available; length++) {
+            conservativeIncrement(key(contextHashes[length], length, code));
+        }
+
+        // Extend every context by the new move, longest first so shorter hashes are still the old ones
+        for (int length = MAX_CONTEXT; length >= 1; length--) {
+            contextHashes[length] = mix(contextHashes[length - 1] * 31 + code + 1);
+        }
+        movesSeen++;
+
+        if (movesSeen % DECAY_INTERVAL == 0) {
+            decay();
+        }
+    }
+
+    /**
+     * Predicts the next move from the longest context with enough support. Contexts are
+     * tried from shortest to longest and the longest one found before the deadline is returned.
+     * @param deadlineNanos Deadline as a System.nanoTime() value
+     * @return The best prediction found in time, or null if none was found
+     */
+    public Prediction predict(long deadlineNanos) {
+        double errorBound = Math.E / WIDTH * totalCount;
+        int available = Math.min(MAX_CONTEXT, movesSeen);
+        Prediction best = null;
+        for (int length = 1; length <= available; length++) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                break;
+            }
+            int bestMove = -1;
+            int bestCount = 0;
+            int support = 0;
+            for (int m = 0; m < MOVES.length; m++) {
+                int count = estimate(key(contextHashes[length], length, m));
+                support += count;
+                if (count > bestCount) {
+                    bestCount = count;
+                    bestMove = m;
+                }
+            }
+            if (bestMove >= 0 && support >= MIN_SUPPORT + errorBound) {
+                best = new Prediction(MOVES[bestMove], length, bestCount, errorBound);
+            }
+        }
+        return best;
+    }
+
+    public void reset() {
+        for (int[] row : counters) {
+            Arrays.fill(row, 0);
+        }
+        Arrays.fill(contextHashes, 0L);
+        movesSeen = 0;
+        totalCount = 0;
+    }
+
+    private int estimate(long key) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters[row][index(key, row)]);
+        }
+        return min;
+    }
+
+    // Conservative update: only raise the counters that are at the current minimum
+    private void conservativeIncrement(long key) {
+        int target = estimate(key) + 1;
+        for (int row = 0; row < DEPTH; row++) {
+            int i = index(key, row);
+            if (counters[row][i] < target) {
+                counters[row][i] = target;
+            }
+        }
+        totalCount++;
+    }
+
+    private void decay() {
+        for (int[] row : counters) {
+            for (int i = 0; i < WIDTH; i++) {
+                row[i] >>= 1;
+            }
+        }
+        totalCount >>= 1;
+    }
+
+    private static long key(long contextHash, int length, int move) {
+        return mix(contextHash ^ ((long) length << 56) ^ ((long) move << 60));
+    }
+
+    private static int index(long key, int row) {
+        return (int) (mix(key + row * 0x9E3779B97F4A7C15L) & (WIDTH - 1));
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int encode(String move) {
+        return switch (move) {
+            case "Rock" -> 0;
+            case "Paper" -> 1;
+            case "Scissors" -> 2;
+            default -> -1;
+        };
+    }
+}
@@ -0,0 +1,466 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * History store backed by a single append-only CSV file.
+ * Several processes may share the file: every change happens under an exclusive lock
+ * on a sibling ".lock" file, records other processes append are picked up by tail(),
+ * and a rewrite keeps whatever others appended since this process last looked.
+ * The lock file also holds a generation number that every rewrite bumps, so a process
+ * can tell that the file was replaced and must be loaded again before it is rewritten.
+ * Each line ends in a CRC32C of the record, so damage is detected line by line;
+ * files written before checksums were added are still read and appended to as they are.
+ */
+public class CsvHistoryStore implements HistoryStore {
+    /** Record columns of every history CSV file, and the whole header line of files without checksums */
+    public static final String HEADER = "Date,Mode,Player1,Player2,Player1Score,Player2Score,Result";
+    /** Header line of history CSV files with a checksum per line, as written now */
+    public static final String CHECKSUM_HEADER = HEADER + MappedHistoryLoader.CHECKSUM_COLUMN;
+
+    private final Path file;
+    // Whether each batch of appended records is forced to disk before it counts as committed
+    private final boolean fsyncOnAppend;
+    // Serializes appends from the writer thread with full rewrites
+    private final Object fileLock = new Object();
+    // Locked around every read and change of the file, for other processes. A separate
+    // file because rewrites replace the history file itself.
+    private final Path lockFile;
+    private FileChannel lockChannel;
+    private FileLock heldLock;
+    private int lockDepth = 0; // Nested lockAcrossProcesses calls sharing heldLock
+
+    // File offset up to which records are in memory, and the generation of the file it refers to;
+    // both guarded by fileLock
+    private long tailPosition = 0;
+    private long generation = -1;
+    // Set when another process replaced the file, so the history has to be loaded again
+    private boolean replaced = false;
+    // Whether the current file has checksummed lines; older files are appended to in their own format.
+    // Read from the header again whenever the file may have been replaced.
+    private boolean checksummed = true;
+    // Other processes' records found while appending or rewriting, not yet handed out by tail()
+    private final List<GameHistoryManager.GameRecord> pendingExternal = new ArrayList<>();
+
+    public CsvHistoryStore(Path file, boolean fsyncOnAppend) {
+        this.file = file;
+        this.fsyncOnAppend = fsyncOnAppend;
+        this.lockFile = file.resolveSibling(file.getFileName() + ".lock");
+    }
+
+    @Override
+    public void load(Consumer<GameHistoryManager.GameRecord> handler) throws IOException {
+        synchronized (fileLock) {
+            lockAcrossProcesses();
+            try {
+                pendingExternal.clear();
+                replaced = false;
+                if (!Files.exists(file)) {
+                    // Create new file with headers
+                    writeCsv(file, List.of());
+                    markRewritten();
+                    return;
+                }
+                // Stream records straight from the mapped file instead of reading it into a line list
+                MappedHistoryLoader.LoadResult result = new MappedHistoryLoader().load(file, HEADER, handler::accept);
+                if (!result.headerMatched) {
+                    // If the header is damaged or missing, keep the file as a backup and salvage every intact record
+                    Path backup = backupExistingFile();
+                    if (backup == null) {
+                        writeCsv(file, List.of());
+                        markRewritten();
+                        return;
+                    }
+                    HistoryVerifier.Report report = new HistoryVerifier().repair(backup, file, null);
+                    markRewritten();
+                    System.out.println("Salvaged " + report.records + " history records, skipped "
+                        + report.damagedLines + " damaged lines");
+                    result = new MappedHistoryLoader().load(file, HEADER, handler::accept);
+                }
+                checksummed = result.checksummed;
+                markTail();
+                System.out.println(String.format("Loaded %d history records in %.1f ms (%.0f records/s)",
+                    result.records, result.getElapsedMillis(), result.getRecordsPerSecond()));
+            } finally {
+                unlockAcrossProcesses();
+            }
+        }
+    }
+
+    // Appends a batch of newline-terminated records with a single force, so a crash can at worst leave one torn last line
+    @Override
+    public void append(List<GameHistoryManager.GameRecord> records) throws IOException {
+        synchronized (fileLock) {
+            lockAcrossProcesses();
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                StringBuilder sb = new StringBuilder();
+                long size = channel.size();
+                boolean ours = isSameFile(size);
+                if (ours) {
+                    // Keep anything other processes appended for tail() before writing past it
+                    readExternal(channel, size);
+                } else {
+                    replaced = true;
+                    if (size > 0) {
+                        // The other process's file may be in the other format
+                        checksummed = readChecksummed(channel, size);
+                    }
+                }
+                if (size == 0) {
+                    sb.append(CHECKSUM_HEADER).append('\n');
+                    checksummed = true;
+                } else if (!endsWithNewline(channel, size)) {
+                    // Terminate a torn or unterminated last line so it doesn't swallow these records
+                    sb.append('\n');
+                }
+                for (GameHistoryManager.GameRecord record : records) {
+                    sb.append(checksummed ? formatLine(record) : record.toCSV()).append('\n');
+                }
+
+                ByteBuffer buffer = StandardCharsets.UTF_8.encode(sb.toString());
+                channel.position(size);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (fsyncOnAppend) {
+                    channel.force(false);
+                }
+                if (ours) {
+                    tailPosition = channel.size();
+                }
+            } finally {
+                unlockAcrossProcesses();
+            }
+        }
+    }
+
+    /**
+     * Passes on records other processes appended since this process last loaded, appended
+     * or tailed. Cheap when nothing changed: one size check under the lock.
+     */
+    @Override
+    public int tail(Consumer<GameHistoryManager.GameRecord> handler) throws IOException {
+        synchronized (fileLock) {
+            if (!Files.exists(file)) {
+                return 0;
+            }
+            lockAcrossProcesses();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (replaced || !isSameFile(size)) {
+                    replaced = false;
+                    pendingExternal.clear();
+                    return REPLACED;
+                }
+                readExternal(channel, size);
+                List<GameHistoryManager.GameRecord> records = new ArrayList<>(pendingExternal);
+                pendingExternal.clear();
+                records.forEach(handler);
+                return records.size();
+            } finally {
+                unlockAcrossProcesses();
+            }
+        }
+    }
+
+    @Override
+    public void rewrite(Iterable<GameHistoryManager.GameRecord> records) throws IOException {
+        synchronized (fileLock) {
+            lockAcrossProcesses();
+            try {
+                if (Files.exists(file)) {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        long size = channel.size();
+                        if (replaced || !isSameFile(size)) {
+                            // Records in a file this process hasn't read would be lost
+                            replaced = true;
+                            throw new HistoryStore.ReplacedException("History file " + file
+                                + " was replaced by another process and has to be loaded again");
+                        }
+                        readExternal(channel, size);
+                    }
+                }
+                writeCsv(file, withExternal(records));
+                replaced = false;
+                checksummed = true;
+                markRewritten();
+            } finally {
+                unlockAcrossProcesses();
+            }
+        }
+    }
+
+    /**
+     * Checks every line of the file in parallel, without changing it
+     * @param task Receives progress in bytes and is checked for cancellation; may be null
+     */
+    public HistoryVerifier.Report verify(HistoryTask<?> task) throws IOException {
+        synchronized (fileLock) {
+            lockAcrossProcesses();
+            try {
+                return new HistoryVerifier().verify(file, task);
+            } finally {
+                unlockAcrossProcesses();
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file without its damaged lines, keeping the original as a backup.
+     * When this process has read everything in the file, the file is written from the
+     * history in memory, which also brings back the records of damaged lines. Otherwise
+     * the intact records are salvaged from the file and the next tail() reports it as
+     * replaced, so the history is loaded again.
+     * @param current The history in memory, with every queued append already written
+     * @param task Receives progress in bytes and is checked for cancellation; may be null
+     * @return What the check of the original file found
+     */
+    public HistoryVerifier.Report repair(Iterable<GameHistoryManager.GameRecord> current, HistoryTask<?> task) throws IOException {
+        synchronized (fileLock) {
+            lockAcrossProcesses();
+            try {
+                // Millisecond stamp, so a salvage right after a repair can't overwrite this backup
+                String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS"));
+                Path backup = file.resolveSibling(file.getFileName() + "." + timestamp + ".bak");
+                Files.copy(file, backup, StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("Backed up history file before repair to: " + backup);
+                boolean inMemory;
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    inMemory = !replaced && isSameFile(size);
+                    if (inMemory) {
+                        readExternal(channel, size);
+                    }
+                }
+                HistoryVerifier.Report report;
+                if (inMemory) {
+                    report = new HistoryVerifier().verify(file, task);
+                    writeCsv(file, withExternal(current));
+                    System.out.println("Rewrote history file from the history in memory");
+                } else {
+                    report = new HistoryVerifier().repair(backup, file, task);
+                    pendingExternal.clear();
+                    replaced = true; // What was salvaged has to be loaded again
+                }
+                checksummed = true;
+                markRewritten();
+                return report;
+            } finally {
+                unlockAcrossProcesses();
+            }
+        }
+    }
+
+    @Override
+    public void runExclusive(SharedFileAction action) throws IOException {
+        synchronized (fileLock) {
+            lockAcrossProcesses();
+            try {
+                action.run();
+            } finally {
+                unlockAcrossProcesses();
+            }
+        }
+    }
+
+    @Override
+    public String getLocation() {
+        return file.toString();
+    }
+
+    @Override
+    public void close() {
+        // Every append opens and closes its own channel; only the lock file stays open
+        synchronized (fileLock) {
+            if (lockChannel != null) {
+                try {
+                    lockChannel.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing history lock file: " + e.getMessage());
+                }
+                lockChannel = null;
+            }
+        }
+    }
+
+    /**
+     * Writes records as a complete history CSV file, through a temporary file that is
+     * moved into place so readers never see a partial file
+     * @param target The file to create or replace
+     * @param records The records, in order
+     */
+    public static void writeCsv(Path target, Iterable<GameHistoryManager.GameRecord> records) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(parent, "history_", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write(CHECKSUM_HEADER);
+                writer.write('\n');
+                for (GameHistoryManager.GameRecord record : records) {
+                    writer.write(formatLine(record));
+                    writer.write('\n');
+                }
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Formats a record as a history line with its checksum, without the line break
+     */
+    public static String formatLine(GameHistoryManager.GameRecord record) {
+        String line = record.toCSV();
+        CRC32C crc = new CRC32C();
+        crc.update(line.getBytes(StandardCharsets.UTF_8));
+        // Always 8 hex digits
+        return line + "," + Long.toHexString(crc.getValue() | 1L << 32).substring(1);
+    }
+
+    // Moves the file aside; returns the backup, or null if it couldn't be moved
+    private Path backupExistingFile() {
+        try {
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+            Path backupPath = file.resolveSibling(file.getFileName() + "." + timestamp + ".bak");
+            Files.move(file, backupPath, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Backed up existing history file to: " + backupPath);
+            return backupPath;
+        } catch (IOException e) {
+            System.err.println("Error backing up history file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Blocks until no other process is reading or changing the history; caller holds fileLock
+    // and calls unlockAcrossProcesses in a finally block. Nested calls share the one lock.
+    private void lockAcrossProcesses() throws IOException {
+        if (lockDepth > 0) {
+            lockDepth++;
+            return;
+        }
+        if (lockChannel == null || !lockChannel.isOpen()) {
+            lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        heldLock = lockChannel.lock();
+        lockDepth = 1;
+    }
+
+    private void unlockAcrossProcesses() throws IOException {
+        if (--lockDepth > 0) {
+            return;
+        }
+        FileLock lock = heldLock;
+        heldLock = null;
+        lock.release();
+    }
+
+    // Records that the whole current file is in memory; caller holds the lock
+    private void markTail() throws IOException {
+        tailPosition = Files.size(file);
+        generation = readGeneration();
+    }
+
+    // Records that this process just replaced the file, so other processes load it again
+    private void markRewritten() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, readGeneration() + 1);
+        while (buffer.hasRemaining()) {
+            lockChannel.write(buffer, buffer.position());
+        }
+        lockChannel.force(false);
+        markTail();
+    }
+
+    // Other processes' new records survive a rewrite by following this process's records; tail() still hands them over
+    private Iterable<GameHistoryManager.GameRecord> withExternal(Iterable<GameHistoryManager.GameRecord> records) {
+        List<GameHistoryManager.GameRecord> external = new ArrayList<>(pendingExternal);
+        return () -> new Iterator<>() {
+            private final Iterator<GameHistoryManager.GameRecord> ownRecords = records.iterator();
+            private final Iterator<GameHistoryManager.GameRecord> externalRecords = external.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return ownRecords.hasNext() || externalRecords.hasNext();
+            }
+
+            @Override
+            public GameHistoryManager.GameRecord next() {
+                return ownRecords.hasNext() ? ownRecords.next() : externalRecords.next();
+            }
+        };
+    }
+
+    // Generation of the current file, 0 for a lock file written before generations were kept
+    private long readGeneration() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining() && lockChannel.read(buffer, buffer.position()) > 0) {
+            // Keep reading until all eight bytes are in or the file ends
+        }
+        return buffer.hasRemaining() ? 0 : buffer.getLong(0);
+    }
+
+    // False if another process replaced the file since it was last read
+    private boolean isSameFile(long size) throws IOException {
+        return size >= tailPosition && readGeneration() == generation;
+    }
+
+    // Parses complete lines between tailPosition and size into pendingExternal
+    private void readExternal(FileChannel channel, long size) throws IOException {
+        if (size <= tailPosition) {
+            return;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, tailPosition, size - tailPosition);
+        int limit = buffer.limit();
+        int lastNewline = limit - 1;
+        while (lastNewline >= 0 && buffer.get(lastNewline) != '\n') {
+            lastNewline--;
+        }
+        if (lastNewline < 0) {
+            return; // Only part of a line so far
+        }
+        // Checked again in case a process without generation numbers rewrote the file in the other format
+        checksummed = readChecksummed(channel, size);
+        MappedHistoryLoader parser = new MappedHistoryLoader();
+        int lineStart = 0;
+        while (lineStart <= lastNewline) {
+            int lineEnd = MappedHistoryLoader.indexOfNewline(buffer, lineStart, lastNewline + 1);
+            if (!MappedHistoryLoader.isBlank(buffer, lineStart, lineEnd)) {
+                try {
+                    pendingExternal.add(parser.parseLine(buffer, lineStart,
+                        MappedHistoryLoader.trimCarriageReturn(buffer, lineStart, lineEnd), checksummed));
+                } catch (RuntimeException e) {
+                    System.err.println("Error parsing appended history record at byte " + (tailPosition + lineStart) + ": " + e.getMessage());
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        tailPosition += lastNewline + 1;
+    }
+
+    // Whether the file's header announces checksummed lines; files with an unreadable header get them
+    private static boolean readChecksummed(FileChannel channel, long size) throws IOException {
+        return ParallelHistoryImporter.readHeader(channel, size, HEADER)[1] != MappedHistoryLoader.FORMAT_PLAIN;
+    }
+
+    private static boolean endsWithNewline(FileChannel channel, long size) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+        return last.get(0) == '\n';
+    }
+}
@@ -2,7 +2,6 @@ import java.util.*;
 
 public class GameAI {
     private final List<String> playerHistory = new ArrayList<>();
-    private final Map<String, Integer> patternFrequency = new HashMap<>();
     private final Random random = new Random();
     private static final String[] MOVES = {"Rock", "Paper", "Scissors"};
     
@@ -12,16 +11,49 @@ public class GameAI {
     private static final double HARD_AI_WIN_RATE = 0.75;   // AI wins 75%, player wins 25%
     
     private static final double RANDOM_FACTOR = 0.2; // 20% random moves to avoid being too predictable
-    private static final int PATTERN_LENGTH = 3; // Length of patterns to analyze
-    private static final double DECAY_FACTOR = 0.9; // Reduce influence of older patterns
-    private final Map<String, Double> weightedPatternFrequency = new HashMap<>(); // Use weights for patterns
+    private static final int PATTERN_LENGTH = 3; // Moves needed before patterns are analyzed
+    private final ContextSketch contextSketch = new ContextSketch(); // Fixed-memory pattern counts for contexts up to 16 moves
+    private ContextSketch.Prediction lastPrediction = null;
+    
+    // Time allowed for a move when the caller gives no deadline
+    private static final long DEFAULT_MOVE_BUDGET_NANOS = 5_000_000L;
+    private boolean lastDecisionTimedOut = false;
+    
+    // Predictability of the player, measured across matches in this session
+    private static final int RANDOMNESS_WINDOW = 24;
+    private static final int RANDOMNESS_MIN_SAMPLES = 12;
+    private static final double RANDOM_PLAYER_THRESHOLD = 0.15; // Below this the player is treated as random
+    private final RandomnessEstimator randomnessEstimator = new RandomnessEstimator(RANDOMNESS_WINDOW, RANDOMNESS_MIN_SAMPLES);
     
     // Current difficulty level (defaults to MEDIUM)
     private String difficultyLevel = "MEDIUM";
 
     public String predictNextMove() {
+        return predictNextMove(System.nanoTime() + DEFAULT_MOVE_BUDGET_NANOS);
+    }
+    
+    /**
+     * Anytime move selection: predictors are tried in priority order and the best
+     * answer available when the deadline passes is used
+     * @param deadlineNanos Deadline as a System.nanoTime() value
+     * @return The computer's move
+     */
+    public String predictNextMove(long deadlineNanos) {
+        lastDecisionTimedOut = false;
+        lastPrediction = null;
+        
+        // Against an effectively random player no pattern can pay off, so play the equilibrium
+        if (isPlayerRandom()) {
+            return MOVES[random.nextInt(MOVES.length)];
+        }
+
         if (playerHistory.size() < PATTERN_LENGTH) {
-            return getStrategyBasedMove();
+            // The opening book may still need loading from disk, so it is skipped once out of time
+            if (isPastDeadline(deadlineNanos)) {
+                return getStrategyBasedMove();
+            }
+            // Too little history for this player, so fall back on how players in general open
+            return getStrategyBasedMove(OpeningBook.getInstance().predictNextMove(playerHistory));
         }
 
         // Decide if we should make a random move
@@ -30,13 +62,38 @@ public class GameAI {
         }
 
         // Analyze recent pattern
-        String recentPattern = getRecentPattern();
-        String predictedPlayerMove = predictPlayerMoveWithWeights(recentPattern);
+        String predictedPlayerMove = predictPlayerMoveFromContext(deadlineNanos);
+        // The sketch stops at the deadline, so being past it means the search was cut short
+        lastDecisionTimedOut = System.nanoTime() - deadlineNanos >= 0;
 
         // Return move based on strategy - this implements our win rate control
         return getStrategyBasedMove(predictedPlayerMove);
     }
     
+    /**
+     * Checks whether the last move had to be settled before every predictor ran
+     */
+    public boolean isLastDecisionTimedOut() {
+        return lastDecisionTimedOut;
+    }
+    
+    private boolean isPastDeadline(long deadlineNanos) {
+        if (System.nanoTime() - deadlineNanos >= 0) {
+            lastDecisionTimedOut = true;
+        }
+        return lastDecisionTimedOut;
+    }
+    
+    /**
+     * Gets a move against a player move predicted elsewhere, still honouring the difficulty win rate
+     * @param predictedPlayerMove The predicted player move
+     * @return The computer's move
+     */
+    public String predictNextMove(String predictedPlayerMove) {
+        lastPrediction = null;
+        return getStrategyBasedMove(predictedPlayerMove);
+    }
+    
     /**
      * Sets the difficulty level for the AI
      * @param difficultyLevel The difficulty level (EASY, MEDIUM, or HARD)
@@ -45,43 +102,40 @@ public class GameAI {
         this.difficultyLevel = difficultyLevel;
     }
 
-    public void recordPlayerMove(String move) {
-        playerHistory.add(move);
-        if (playerHistory.size() >= PATTERN_LENGTH) {
-            String pattern = getRecentPattern();
-            weightedPatternFrequency.merge(pattern, 1.0, (oldValue, newValue) -> oldValue * DECAY_FACTOR + newValue);
-        }
+    /**
+     * Gets how predictable the player's recent moves are
+     * @return 0 for a random player up to 1 for a fully predictable one, or -1 if too few moves were seen
+     */
+    public double getPlayerPredictability() {
+        return randomnessEstimator.hasEstimate() ? randomnessEstimator.getPredictability() : -1;
     }
-
-    private String getRecentPattern() {
-        StringBuilder pattern = new StringBuilder();
-        for (int i = playerHistory.size() - PATTERN_LENGTH; i < playerHistory.size(); i++) {
-            pattern.append(playerHistory.get(i).charAt(0)); // Using first letter of each move
-        }
-        return pattern.toString();
+    
+    private boolean isPlayerRandom() {
+        return randomnessEstimator.hasEstimate()
+            && randomnessEstimator.getPredictability() < RANDOM_PLAYER_THRESHOLD;
     }
 
-    private String predictPlayerMoveWithWeights(String recentPattern) {
-        // Find the most likely move after this pattern using weighted probabilities
-        Map<String, Double> moveAfterPatternWeights = new HashMap<>();
-
-        for (int i = 0; i < playerHistory.size() - PATTERN_LENGTH; i++) {
-            StringBuilder currentPattern = new StringBuilder();
-            for (int j = 0; j < PATTERN_LENGTH; j++) {
-                currentPattern.append(playerHistory.get(i + j).charAt(0));
-            }
-
-            if (currentPattern.toString().equals(recentPattern) && i + PATTERN_LENGTH < playerHistory.size()) {
-                String nextMove = playerHistory.get(i + PATTERN_LENGTH);
-                moveAfterPatternWeights.merge(nextMove, weightedPatternFrequency.getOrDefault(currentPattern.toString(), 1.0), Double::sum);
-            }
-        }
+    public void recordPlayerMove(String move) {
+        randomnessEstimator.recordMove(move);
+        contextSketch.recordMove(move);
+        playerHistory.add(move);
+    }
 
-        if (moveAfterPatternWeights.isEmpty()) {
+    private String predictPlayerMoveFromContext(long deadlineNanos) {
+        // Use the longest recent context the player has repeated often enough
+        lastPrediction = contextSketch.predict(deadlineNanos);
+        if (lastPrediction == null) {
             return MOVES[random.nextInt(MOVES.length)];
         }
-
-        return Collections.max(moveAfterPatternWeights.entrySet(), Map.Entry.comparingByValue()).getKey();
+        return lastPrediction.move;
+    }
+    
+    /**
+     * Gets the last pattern-based prediction, including the sketch's error bound on its count
+     * @return The prediction, or null if the last move was not pattern-based
+     */
+    public ContextSketch.Prediction getLastPrediction() {
+        return lastPrediction;
     }
     
     /**
@@ -158,9 +212,17 @@ public class GameAI {
         return MOVES[random.nextInt(MOVES.length)];
     }
 
+    /**
+     * Forgets the predictability measured across matches, for when a different player takes over
+     */
+    public void forgetPlayer() {
+        randomnessEstimator.reset();
+    }
+
+    // The randomness estimate is kept across matches since a single match is too short to measure it
     public void reset() {
         playerHistory.clear();
-        patternFrequency.clear();
-        weightedPatternFrequency.clear(); // Reset weighted patterns
+        contextSketch.reset(); // Reset pattern counts
+        lastPrediction = null;
     }
 }
@@ -1,25 +1,80 @@
 import java.io.*;
 import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class GameHistoryManager {
     private static final String DATA_DIR = "data";
     private static final String HISTORY_FILE = "game_history.csv";
-    private static final String[] CSV_HEADERS = {"Date", "Mode", "Player1", "Player2", "Player1Score", "Player2Score", "Result"};
+    private static final String ROLLUP_FILE = "history_rollup.csv";
+    private static final int RETENTION_PROGRESS_INTERVAL = 4096;
+    private static final int REWRITE_ATTEMPTS = 3; // Rewrites tried while other processes keep replacing the store
+    /** File extension selecting the binary columnar format in export/import */
+    public static final String BINARY_EXTENSION = ".rpsh";
     private static GameHistoryManager instance;
-    private final List<GameRecord> gameHistory;
-    private final Path historyFilePath;
+    private HistoryColumns gameHistory;
+    // Durable copy of the history, CSV or database as configured
+    private final HistoryStore store;
+    // Persists new records off the calling thread, in group commits
+    private final HistoryWriter historyWriter;
+    // Per-day totals of matches past the retention period, which are no longer kept in detail
+    private HistoryRollup rollup = new HistoryRollup(Paths.get(DATA_DIR, ROLLUP_FILE));
+    // Bumped whenever the history is cleared or replaced, so background jobs can tell
+    private long historyVersion = 0;
+    // Runs long history jobs such as exports one at a time, off the caller's thread
+    private final ScheduledExecutorService taskExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "history-tasks");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Leaderboard aggregates kept up to date on append; null when they need a rebuild
+    private Map<String, PlayerStats> leaderboard;
+    private Map<String, Map<String, PlayerStats>> leaderboardByMode;
+    // Elo ratings per mode, updated on append; null when they need a recompute
+    private RatingEngine ratings;
 
     private GameHistoryManager() {
-        gameHistory = new ArrayList<>();
+        gameHistory = new HistoryColumns();
         // Create data directory if it doesn't exist
         try {
             Files.createDirectories(Paths.get(DATA_DIR));
-            historyFilePath = Paths.get(DATA_DIR, HISTORY_FILE);
+            store = createStore();
             loadHistory();
+            rebuildAggregates();
+            historyWriter = new HistoryWriter(store::append,
+                ConfigManager.getInstance().getInt("history_queue_capacity", 1024));
+            int retentionDays = ConfigManager.getInstance().getInt("history_retention_days", 0);
+            if (retentionDays > 0) {
+                taskExecutor.scheduleWithFixedDelay(() -> {
+                    try {
+                        applyRetention(retentionDays);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Error applying history retention: " + e.getMessage());
+                    }
+                }, 0, 1, TimeUnit.DAYS);
+            }
+            // Other game windows or processes may share the history file
+            int pollMillis = ConfigManager.getInstance().getInt("history_poll_millis", 2000);
+            if (pollMillis > 0) {
+                taskExecutor.scheduleWithFixedDelay(this::pollExternalChanges, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                historyWriter.close();
+                store.close();
+            }, "history-writer-shutdown"));
         } catch (IOException e) {
             System.err.println("Error creating data directory: " + e.getMessage());
             throw new RuntimeException("Failed to initialize game history storage", e);
@@ -33,37 +88,138 @@ public class GameHistoryManager {
         return instance;
     }
 
+    // history_store selects "csv" (default), "wal" or "jdbc"; the CSV file is used if the database can't be opened
+    private static HistoryStore createStore() {
+        ConfigManager config = ConfigManager.getInstance();
+        String storeType = config.getString("history_store", "csv");
+        boolean fsyncOnAppend = !"none".equalsIgnoreCase(config.getString("history_fsync", "always"));
+        Path csvFile = Paths.get(DATA_DIR, HISTORY_FILE);
+        if ("wal".equalsIgnoreCase(storeType)) {
+            WalHistoryStore wal = new WalHistoryStore(Paths.get(DATA_DIR), fsyncOnAppend);
+            try {
+                if (!wal.exists() && Files.exists(csvFile)) {
+                    // First start with the log: carry over the existing CSV history
+                    System.out.println("Seeded history log with " + wal.seed(csvFile) + " records from " + csvFile);
+                }
+                return wal;
+            } catch (IOException e) {
+                System.err.println("Error seeding history log: " + e.getMessage());
+            }
+        }
+        if ("jdbc".equalsIgnoreCase(storeType)) {
+            try {
+                return new JdbcHistoryStore(config.getString("history_jdbc_url", JdbcHistoryStore.DEFAULT_URL));
+            } catch (IOException e) {
+                System.err.println(e.getMessage() + ", falling back to the CSV history file");
+            }
+        }
+        return new CsvHistoryStore(csvFile, fsyncOnAppend);
+    }
+
     public static class GameRecord {
-        public final String date;
+        /** Timestamp of a record whose date text is not a valid date; getDate() returns the text verbatim */
+        public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+        private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        /** When the match was played, in epoch millis */
+        public final long timestamp;
+        private String date; // Display text, formatted from timestamp on first use
+        // Names and modes are the canonical instances from SymbolTable, shared by all records
         public final String mode;
         public final String player1;
         public final String player2;
         public final int player1Score;
         public final int player2Score;
-        public final String result;
+        private final String recordedResult; // Only set when it differs from what the scores say
 
         public GameRecord(String mode, String player1, String player2, int player1Score, int player2Score) {
-            this.date = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            this.mode = mode;
-            this.player1 = player1;
-            this.player2 = player2;
+            // Whole seconds, so the record equals what is read back from the stored date text
+            this.timestamp = System.currentTimeMillis() / 1000 * 1000;
+            SymbolTable symbols = SymbolTable.getInstance();
+            this.mode = symbols.intern(mode);
+            this.player1 = symbols.intern(player1);
+            this.player2 = symbols.intern(player2);
             this.player1Score = player1Score;
             this.player2Score = player2Score;
-            this.result = determineResult(player1, player2, player1Score, player2Score);
+            this.recordedResult = null;
         }
 
         // Constructor for loading from CSV with preserved date
         public GameRecord(String date, String mode, String player1, String player2, int player1Score, int player2Score, String result) {
-            this.date = date;
-            this.mode = mode;
-            this.player1 = player1;
-            this.player2 = player2;
+            this(parseTimestamp(date), mode, player1, player2, player1Score, player2Score, result);
+            if (timestamp == NO_TIMESTAMP) {
+                this.date = date;
+            }
+        }
+
+        // Constructor for stores that keep the timestamp itself; a null result is derived from the scores
+        public GameRecord(long timestamp, String mode, String player1, String player2, int player1Score, int player2Score, String result) {
+            this.timestamp = timestamp;
+            SymbolTable symbols = SymbolTable.getInstance();
+            this.mode = symbols.intern(mode);
+            this.player1 = symbols.intern(player1);
+            this.player2 = symbols.intern(player2);
             this.player1Score = player1Score;
             this.player2Score = player2Score;
-            this.result = result;
+            // Hand-edited or legacy results that disagree with the scores are kept verbatim
+            this.recordedResult = result == null || isDerivedResult(result, player1, player2, player1Score, player2Score)
+                ? null : result;
+        }
+
+        /**
+         * Gets the result text, derived from the scores unless the record carries a different one
+         * @return "<name> won", "Draw", or the recorded text
+         */
+        public String getResult() {
+            return recordedResult != null ? recordedResult : determineResult(player1, player2, player1Score, player2Score);
+        }
+
+        /**
+         * Gets the result text only if it differs from what the scores say
+         * @return The recorded text, or null when getResult() derives it
+         */
+        public String getRecordedResult() {
+            return recordedResult;
+        }
+
+        // Compares without building the derived text
+        private static boolean isDerivedResult(String result, String player1, String player2, int score1, int score2) {
+            if (score1 == score2) return "Draw".equals(result);
+            String winner = score1 > score2 ? player1 : player2;
+            return result.length() == winner.length() + 4 && result.startsWith(winner) && result.endsWith(" won");
+        }
+
+        /**
+         * Gets the date as display text, formatting it on first use
+         * @return "yyyy-MM-dd HH:mm:ss" in the local time zone, or the original text if it was not a valid date
+         */
+        public String getDate() {
+            if (date == null) {
+                date = formatTimestamp(timestamp);
+            }
+            return date;
         }
 
-        private String determineResult(String player1, String player2, int score1, int score2) {
+        /**
+         * Parses "yyyy-MM-dd HH:mm:ss" local time to epoch millis
+         * @return The timestamp, or NO_TIMESTAMP if the text is not a valid date
+         */
+        public static long parseTimestamp(String date) {
+            try {
+                LocalDateTime local = LocalDateTime.parse(date, DATE_FORMAT);
+                ZonedDateTime zoned = local.atZone(ZoneId.systemDefault());
+                // Times skipped by a DST change would come back shifted, so treat them as text
+                return zoned.toLocalDateTime().equals(local) ? zoned.toInstant().toEpochMilli() : NO_TIMESTAMP;
+            } catch (DateTimeParseException e) {
+                return NO_TIMESTAMP;
+            }
+        }
+
+        public static String formatTimestamp(long millis) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).format(DATE_FORMAT);
+        }
+
+        private static String determineResult(String player1, String player2, int score1, int score2) {
             if (score1 > score2) return player1 + " won";
             if (score2 > score1) return player2 + " won";
             return "Draw";
@@ -73,10 +229,11 @@ public class GameHistoryManager {
             // Escape any commas in the fields
             String escapedPlayer1 = player1.contains(",") ? "\"" + player1 + "\"" : player1;
             String escapedPlayer2 = player2.contains(",") ? "\"" + player2 + "\"" : player2;
+            String result = getResult();
             String escapedResult = result.contains(",") ? "\"" + result + "\"" : result;
             
             return String.join(",", 
-                date,
+                getDate(),
                 mode,
                 escapedPlayer1,
                 escapedPlayer2,
@@ -107,155 +264,514 @@ public class GameHistoryManager {
     }
 
     private void loadHistory() {
+        loadInto(gameHistory, rollup);
+    }
+
+    private void loadInto(HistoryColumns columns, HistoryRollup summaries) {
         try {
-            if (Files.exists(historyFilePath)) {
-                List<String> lines = Files.readAllLines(historyFilePath);
-                if (!lines.isEmpty() && !lines.get(0).equals(String.join(",", CSV_HEADERS))) {
-                    // If file exists but doesn't have headers, backup the old file and create a new one
-                    backupExistingFile();
-                    saveHistory();
-                    return;
+            // Both files under one lock, so another process can't roll up in between
+            store.runExclusive(() -> {
+                try {
+                    summaries.load();
+                } catch (IOException e) {
+                    System.err.println("Error loading history roll-up: " + e.getMessage());
                 }
-                // Skip header line
-                for (int i = 1; i < lines.size(); i++) {
-                    try {
-                        if (!lines.get(i).trim().isEmpty()) {
-                            gameHistory.add(parseCSVLine(lines.get(i)));
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error parsing history line " + i + ": " + e.getMessage());
+                store.load(record -> {
+                    // Rows past the cutoff are already in the roll-up, e.g. if a crash interrupted the rewrite
+                    if (!summaries.isRolledUp(record)) {
+                        columns.append(record);
+                    }
+                });
+            });
+        } catch (IOException e) {
+            System.err.println("Error loading game history: " + e.getMessage());
+        }
+    }
+
+    // Picks up matches that other processes added to the shared store, or reloads
+    // everything if one of them rewrote it (cleared, imported or compacted)
+    private void pollExternalChanges() {
+        try {
+            List<GameRecord> external = new ArrayList<>();
+            if (store.tail(external::add) == HistoryStore.REPLACED) {
+                reloadHistory();
+                return;
+            }
+            if (!external.isEmpty()) {
+                synchronized (this) {
+                    for (GameRecord record : external) {
+                        append(record); // Already stored, so not queued for writing
                     }
                 }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error checking for history changes by other processes: " + e.getMessage());
+        }
+    }
+
+    // The store is loaded into new columns without holding the lock, so games and the history
+    // window carry on meanwhile; only the swap happens under it
+    private void reloadHistory() {
+        historyWriter.flush();
+        long version;
+        int rowsBefore;
+        synchronized (this) {
+            version = historyVersion;
+            rowsBefore = gameHistory.size();
+        }
+        HistoryColumns reloaded = new HistoryColumns();
+        HistoryRollup reloadedRollup = new HistoryRollup(Paths.get(DATA_DIR, ROLLUP_FILE));
+        loadInto(reloaded, reloadedRollup);
+        synchronized (this) {
+            if (version != historyVersion) {
+                return; // Cleared or replaced meanwhile; that history is the one to keep
+            }
+            HistoryColumns.Snapshot current = gameHistory.snapshot();
+            if (current.size() > rowsBefore) {
+                carryOver(current, rowsBefore, reloaded);
+            }
+            gameHistory = reloaded;
+            rollup = reloadedRollup;
+            historyVersion++;
+            invalidateAggregates();
+        }
+        System.out.println("Reloaded history from the store: " + reloaded.size() + " records");
+    }
+
+    // Adds the matches recorded during a reload to the reloaded history, except those the load
+    // already read back from the store. Counted per content hash, so repeats of a match stay.
+    private static void carryOver(HistoryColumns.Snapshot recorded, int fromRow, HistoryColumns reloaded) {
+        long since = Long.MAX_VALUE;
+        for (int row = fromRow; row < recorded.size(); row++) {
+            since = Math.min(since, recorded.get(row).timestamp); // Undated rows make this Long.MIN_VALUE: all rows
+        }
+        Map<Long, Integer> loaded = new HashMap<>();
+        for (int id : reloaded.query(null, null, since, Long.MAX_VALUE)) {
+            loaded.merge(HistoryMerger.contentHash(reloaded.get(id)), 1, Integer::sum);
+        }
+        for (int row = fromRow; row < recorded.size(); row++) {
+            GameRecord record = recorded.get(row);
+            long hash = HistoryMerger.contentHash(record);
+            int count = loaded.getOrDefault(hash, 0);
+            if (count > 0) {
+                loaded.put(hash, count - 1);
             } else {
-                // Create new file with headers
-                saveHistory();
+                reloaded.append(record);
             }
+        }
+    }
+
+    /**
+     * Prepares a compaction for submitTask: the whole store is rewritten from memory.
+     * Records are normally appended one at a time, so this is only needed to compact the file.
+     */
+    public HistoryTask<Integer> createCompactTask() {
+        return new HistoryTask<>("Compact game history") {
+            @Override
+            protected Integer execute() throws IOException {
+                checkCancelled(); // A rewrite can't be stopped halfway
+                int count = rewriteStore(null);
+                setTotal(count);
+                setProcessed(count);
+                return count;
+            }
+        };
+    }
+
+    private void saveHistory() {
+        saveHistory(null);
+    }
+
+    private void saveHistory(Runnable reapply) {
+        try {
+            rewriteStore(reapply);
         } catch (IOException e) {
-            System.err.println("Error loading game history: " + e.getMessage());
+            System.err.println("Error saving game history: " + e.getMessage());
         }
     }
 
-    // Helper method to parse CSV lines with proper handling of quoted fields
-    private GameRecord parseCSVLine(String line) {
-        List<String> fields = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
-        boolean inQuotes = false;
-        
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            
-            if (c == '"') {
-                // Toggle quote state
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                // End of field, add to list
-                fields.add(sb.toString());
-                sb.setLength(0);
-            } else {
-                // Add character to field
-                sb.append(c);
+    // Rewrites the store from memory. If another process replaced the store since it was read,
+    // its version is loaded first, so records it holds that aren't in memory yet are kept.
+    // reapply redoes this process's change on the loaded history; null if loading is enough.
+    // Returns the number of records written.
+    private int rewriteStore(Runnable reapply) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return writeInOrder(snapshot -> () -> {
+                    store.rewrite(snapshot);
+                    return snapshot.size();
+                });
+            } catch (HistoryStore.ReplacedException e) {
+                if (attempt == REWRITE_ATTEMPTS) throw e;
+                System.out.println(e.getMessage() + "; loading it before rewriting");
+                reloadHistory();
+                if (reapply != null) {
+                    reapply.run();
+                }
             }
         }
-        
-        // Add the last field
-        fields.add(sb.toString());
-        
-        if (fields.size() < 7) {
-            throw new IllegalArgumentException("Invalid CSV line format: expected at least 7 fields, got " + fields.size());
+    }
+
+    // Runs a store change that writes out the current history on the writer thread, so it
+    // lands after the appends of the records in its snapshot and before those of later ones
+    private <T> T writeInOrder(Function<HistoryColumns.Snapshot, HistoryWriter.OrderedAction<T>> change) throws IOException {
+        CompletableFuture<T> done;
+        synchronized (this) {
+            HistoryColumns.Snapshot snapshot = gameHistory.snapshot();
+            if (historyWriter == null) {
+                return change.apply(snapshot).run(); // Still starting up, so nothing is queued
+            }
+            done = historyWriter.submitInOrder(change.apply(snapshot));
         }
-        
-        // Use the fields to create the GameRecord with preserved date
-        return new GameRecord(
-            fields.get(0), // date (preserved from CSV)
-            fields.get(1), // mode
-            fields.get(2), // player1 
-            fields.get(3), // player2
-            Integer.parseInt(fields.get(4).trim()), // player1Score
-            Integer.parseInt(fields.get(5).trim()), // player2Score
-            fields.get(6)  // result
-        );
-    }
-
-    private void backupExistingFile() {
+        return HistoryWriter.await(done);
+    }
+
+    // Saves the current history as a timestamped CSV next to the history file
+    private void backupHistory() {
         try {
-            if (Files.exists(historyFilePath)) {
-                String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-                Path backupPath = historyFilePath.resolveSibling(HISTORY_FILE + "." + timestamp + ".bak");
-                Files.move(historyFilePath, backupPath, StandardCopyOption.REPLACE_EXISTING);
-                System.out.println("Backed up existing history file to: " + backupPath);
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+            Path backupPath = Paths.get(DATA_DIR, HISTORY_FILE + "." + timestamp + ".bak");
+            CsvHistoryStore.writeCsv(backupPath, getSnapshot());
+            System.out.println("Backed up existing history to: " + backupPath);
+            if (Files.exists(rollup.getFile())) {
+                Path rollupBackup = Paths.get(DATA_DIR, ROLLUP_FILE + "." + timestamp + ".bak");
+                Files.copy(rollup.getFile(), rollupBackup, StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("Backed up history roll-up to: " + rollupBackup);
             }
         } catch (IOException e) {
-            System.err.println("Error backing up history file: " + e.getMessage());
+            System.err.println("Error backing up history: " + e.getMessage());
         }
     }
 
-    public void saveHistory() {
-        try {
-            List<String> lines = new ArrayList<>();
-            lines.add(String.join(",", CSV_HEADERS));
-            for (GameRecord record : gameHistory) {
-                lines.add(record.toCSV());
-            }
-            // Create a temporary file first
-            Path tempFile = Files.createTempFile(historyFilePath.getParent(), "history_", ".tmp");
-            Files.write(tempFile, lines);
-            // Atomically move the temporary file to the target location
-            Files.move(tempFile, historyFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-        } catch (IOException e) {
-            System.err.println("Error saving game history: " + e.getMessage());
+    // Queued under the lock, so the writer's order matches the order of the history in memory
+    public synchronized void addRecord(GameRecord record) {
+        append(record);
+        historyWriter.submit(record);
+    }
+
+    // Appends a batch of records merged from another history, under one lock. Records from
+    // before the retention cutoff are left out: the roll-up only keeps per-day totals, so it
+    // can't tell whether a match is already counted. Returns the number left out.
+    synchronized int appendMerged(List<GameRecord> records) {
+        int rolledUp = 0;
+        for (GameRecord record : records) {
+            if (rollup.isRolledUp(record)) {
+                rolledUp++;
+                continue;
+            }
+            if (!gameHistory.isLatest(record.timestamp)) {
+                ratings = null; // Elo depends on match order, so an older match means a replay
+            }
+            append(record);
+            historyWriter.submit(record);
         }
+        return rolledUp;
     }
 
-    public void addRecord(GameRecord record) {
-        gameHistory.add(record);
-        saveHistory();
+    // Adds a record to memory and to the maintained aggregates; caller holds the lock
+    private void append(GameRecord record) {
+        gameHistory.append(record);
+        if (leaderboard != null) {
+            accumulate(leaderboard, record);
+            accumulate(leaderboardByMode.computeIfAbsent(record.mode, _ -> new HashMap<>()), record);
+        }
+        if (ratings != null) {
+            ratings.record(record);
+        }
+    }
+
+    /**
+     * Gets the write-behind queue, for its queue depth and commit latency metrics
+     */
+    public HistoryWriter getHistoryWriter() {
+        return historyWriter;
+    }
+
+    /**
+     * Takes a consistent read-only view of the history in O(1). The view can be iterated,
+     * paged or streamed from any thread while new records keep being added.
+     */
+    public synchronized HistoryColumns.Snapshot getSnapshot() {
+        return gameHistory.snapshot();
+    }
+
+    /**
+     * Finds records matching every given condition through the player, mode and date indexes
+     * @param player Player name that took part as either player, or null for any
+     * @param mode Game mode ("PvC" or "PvP"), or null for any
+     * @param fromMillis Earliest epoch millis, inclusive; Long.MIN_VALUE for no lower bound
+     * @param toMillis Latest epoch millis, exclusive; Long.MAX_VALUE for no upper bound
+     * @return Ids of the matching records in history order, for use with getRecord
+     */
+    public synchronized int[] findRecordIds(String player, String mode, long fromMillis, long toMillis) {
+        return gameHistory.query(player, mode, fromMillis, toMillis);
+    }
+
+    /**
+     * Same as findRecordIds, but optionally ordered by date through the date index
+     * @param orderByTime Whether to return ids oldest first instead of in history order
+     */
+    public synchronized int[] findRecordIds(String player, String mode, long fromMillis, long toMillis, boolean orderByTime) {
+        return gameHistory.query(player, mode, fromMillis, toMillis, orderByTime);
+    }
+
+    /**
+     * Counts the records of one mode without scanning the history
+     */
+    public synchronized int getRecordCount(String mode) {
+        return gameHistory.countByMode(mode);
     }
 
-    public List<GameRecord> getGameHistory() {
-        return new ArrayList<>(gameHistory);
+    /**
+     * Gets a single record by id, its position in the history
+     */
+    public synchronized GameRecord getRecord(int id) {
+        return gameHistory.get(id);
+    }
+
+    /**
+     * Gets a player's win rate and games played per hour, day or week
+     * @param player Player whose results are counted
+     * @param mode Game mode ("PvC" or "PvP"), or null for any
+     * @param fromMillis Earliest epoch millis, inclusive; Long.MIN_VALUE for no lower bound
+     * @param toMillis Latest epoch millis, exclusive; Long.MAX_VALUE for no upper bound
+     * @param bucket Bucket width
+     * @return Stats by bucket start in epoch millis, oldest first, for buckets with games
+     */
+    public synchronized SortedMap<Long, PlayerStats> getStatsByTime(String player, String mode,
+                                                                    long fromMillis, long toMillis,
+                                                                    HistoryColumns.TimeBucket bucket) {
+        SortedMap<Long, PlayerStats> buckets = gameHistory.statsByTime(player, mode, fromMillis, toMillis, bucket);
+        rollup.addStatsByTime(buckets, player, mode, fromMillis, toMillis, bucket);
+        return buckets;
+    }
+
+    public synchronized int getRecordCount() {
+        return gameHistory.size();
     }
 
     public void clearHistory() {
+        clearInMemory();
+        saveHistory(this::clearInMemory);
+    }
+
+    private synchronized void clearInMemory() {
         gameHistory.clear();
-        saveHistory();
+        rollup.clear();
+        saveRollup();
+        historyVersion++;
+        invalidateAggregates();
     }
 
-    public Map<String, PlayerStats> getLeaderboard() {
-        Map<String, PlayerStats> stats = new HashMap<>();
+    /**
+     * Gets overall per-player stats, from aggregates maintained as records are added
+     * @return A copy of the stats, costing O(players) rather than O(games)
+     */
+    public synchronized Map<String, PlayerStats> getLeaderboard() {
+        if (leaderboard == null) rebuildAggregates();
+        return copyStats(leaderboard);
+    }
 
-        for (GameRecord record : gameHistory) {
-            // Update Player 1 stats
-            stats.computeIfAbsent(record.player1, k -> new PlayerStats())
-                 .updateStats(record.player1Score, record.player2Score);
+    public synchronized Map<String, Map<String, PlayerStats>> getLeaderboardByMode() {
+        if (leaderboardByMode == null) rebuildAggregates();
+        Map<String, Map<String, PlayerStats>> statsByMode = new HashMap<>();
+        for (Map.Entry<String, Map<String, PlayerStats>> entry : leaderboardByMode.entrySet()) {
+            statsByMode.put(entry.getKey(), copyStats(entry.getValue()));
+        }
+        // Always include the known modes
+        statsByMode.putIfAbsent("PvC", new HashMap<>());
+        statsByMode.putIfAbsent("PvP", new HashMap<>());
+        return statsByMode;
+    }
 
-            // Update Player 2 stats
-            stats.computeIfAbsent(record.player2, k -> new PlayerStats())
-                 .updateStats(record.player2Score, record.player1Score);
+    // Only needed after loading or replacing the history. At startup the store aggregates if it can;
+    // later it may lag behind memory (queued appends, pending rewrite), so the columns are scanned
+    private synchronized void rebuildAggregates() {
+        Map<String, Map<String, PlayerStats>> byMode = null;
+        // The store may still hold rows that were rolled up, so it is only asked while there is no roll-up
+        if (historyWriter == null && rollup.isEmpty()) {
+            try {
+                byMode = store.queryLeaderboardByMode();
+            } catch (IOException e) {
+                System.err.println("Error querying leaderboard: " + e.getMessage());
+            }
+        }
+        if (byMode == null) {
+            byMode = gameHistory.leaderboardByMode();
+            // Matches past the retention period only exist as daily totals
+            for (Map.Entry<String, Map<String, PlayerStats>> mode : rollup.totalsByMode().entrySet()) {
+                Map<String, PlayerStats> stats = byMode.computeIfAbsent(mode.getKey(), _ -> new HashMap<>());
+                for (Map.Entry<String, PlayerStats> entry : mode.getValue().entrySet()) {
+                    stats.computeIfAbsent(entry.getKey(), _ -> new PlayerStats()).add(entry.getValue());
+                }
+            }
+        }
+        // Overall stats are the per-mode stats summed per player
+        leaderboard = new HashMap<>();
+        for (Map<String, PlayerStats> stats : byMode.values()) {
+            for (Map.Entry<String, PlayerStats> entry : stats.entrySet()) {
+                leaderboard.computeIfAbsent(entry.getKey(), _ -> new PlayerStats()).add(entry.getValue());
+            }
         }
+        leaderboardByMode = byMode;
+    }
 
-        return stats;
+    private synchronized void invalidateAggregates() {
+        leaderboard = null;
+        leaderboardByMode = null;
+        ratings = null;
     }
 
-    public Map<String, Map<String, PlayerStats>> getLeaderboardByMode() {
-        Map<String, Map<String, PlayerStats>> statsByMode = new HashMap<>();
-        // Initialize with known modes
-        statsByMode.put("PvC", new HashMap<>());
-        statsByMode.put("PvP", new HashMap<>());
+    /**
+     * Rolls matches older than the retention period up into per-player, per-mode, per-day
+     * totals and drops them from the detailed history. Leaderboards and daily or weekly
+     * stats stay exact, and the ratings reached by the end of the rolled-up matches are
+     * saved with the totals, so ratings stay the same after a restart.
+     * @param retentionDays Whole days of matches to keep in detail, counting today
+     * @return The number of matches rolled up
+     */
+    public long applyRetention(int retentionDays) throws IOException {
+        return createRetentionTask(retentionDays).run();
+    }
 
-        for (GameRecord record : gameHistory) {
-            // Get the correct mode map
-            Map<String, PlayerStats> modeStats = statsByMode.computeIfAbsent(record.mode, _ -> new HashMap<>());
-            
-            // Update Player 1 stats
-            modeStats.computeIfAbsent(record.player1, _ -> new PlayerStats())
-                     .updateStats(record.player1Score, record.player2Score);
+    /**
+     * Prepares a retention pass for submitTask; see applyRetention
+     */
+    public HistoryTask<Long> createRetentionTask(int retentionDays) {
+        if (retentionDays < 1) {
+            throw new IllegalArgumentException("Retention must keep at least one day, got " + retentionDays);
+        }
+        LocalDate cutoffDay = LocalDate.now().minusDays(retentionDays - 1L);
+        return new HistoryTask<>("Roll up matches before " + cutoffDay) {
+            @Override
+            protected Long execute() throws IOException {
+                return rollUpBefore(cutoffDay, this);
+            }
+        };
+    }
 
-            // Update Player 2 stats
-            modeStats.computeIfAbsent(record.player2, _ -> new PlayerStats())
-                     .updateStats(record.player2Score, record.player1Score);
+    // The kept rows are copied off the lock from a snapshot; only the swap, and any rows
+    // appended during the copy, happen under it
+    private long rollUpBefore(LocalDate cutoffDay, HistoryTask<Long> task) throws IOException {
+        long cutoffMillis = cutoffDay.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        historyWriter.flush();
+        HistoryColumns.Snapshot snapshot;
+        int[] expired;
+        long version;
+        synchronized (this) {
+            snapshot = gameHistory.snapshot();
+            expired = gameHistory.query(null, null, Long.MIN_VALUE, cutoffMillis);
+            version = historyVersion;
+        }
+        if (expired.length == 0) {
+            return 0;
         }
 
-        return statsByMode;
+        HistoryColumns kept = new HistoryColumns();
+        task.setTotal(snapshot.size());
+        int next = 0;
+        for (int row = 0; row < snapshot.size(); row++) {
+            if (next < expired.length && expired[next] == row) {
+                next++; // Ids come in history order
+            } else {
+                kept.append(snapshot.get(row));
+            }
+            if (row % RETENTION_PROGRESS_INTERVAL == 0) {
+                task.setProcessed(row);
+                task.checkCancelled();
+            }
+        }
+
+        synchronized (this) {
+            if (version != historyVersion) {
+                return 0; // Cleared or replaced meanwhile; the next pass works on the new history
+            }
+            HistoryColumns.Snapshot current = gameHistory.snapshot();
+            // Includes any rows before the cutoff appended during the copy
+            int[] expiredByTime = gameHistory.query(null, null, Long.MIN_VALUE, cutoffMillis, true);
+            rollup.setRatings(RatingEngine.recompute(current, expiredByTime, rollup.getRatings()));
+            for (int row : expired) {
+                rollup.add(snapshot.get(row));
+            }
+            for (int row = snapshot.size(); row < current.size(); row++) {
+                GameRecord record = current.get(row);
+                if (record.timestamp != GameRecord.NO_TIMESTAMP && record.timestamp < cutoffMillis) {
+                    rollup.add(record);
+                } else {
+                    kept.append(record);
+                }
+            }
+            rollup.advanceCutoff(cutoffDay);
+            try {
+                store.runExclusive(rollup::save);
+            } catch (IOException e) {
+                store.runExclusive(rollup::load); // Back to what is on disk; the detailed rows are untouched
+                throw e;
+            }
+            // Totals and ratings are unchanged, so the leaderboards and the rating engine stay valid
+            gameHistory = kept;
+        }
+        // Once the roll-up is saved, rows past the cutoff are skipped on load even if this rewrite doesn't finish
+        saveHistory();
+        task.setProcessed(snapshot.size());
+        System.out.println("Rolled up " + expired.length + " matches before " + cutoffDay + " into daily totals");
+        return expired.length;
+    }
+
+    // Under the store's lock, since other processes may share the roll-up file
+    private void saveRollup() {
+        try {
+            store.runExclusive(rollup::save);
+        } catch (IOException e) {
+            System.err.println("Error saving history roll-up: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets a player's Elo rating in one mode
+     * @return The rating, or the initial rating for a player without rated matches
+     */
+    public synchronized double getRating(String mode, String player) {
+        return getRatings().getRating(mode, player);
+    }
+
+    /**
+     * Gets a player's place on a mode's rating ladder, in O(log players)
+     * @return The 1-based rank, or -1 for a player without rated matches
+     */
+    public synchronized int getRank(String mode, String player) {
+        return getRatings().getRank(mode, player);
+    }
+
+    /**
+     * Gets the highest rated players of a mode, in O(log players + count)
+     */
+    public synchronized List<RankedSkipList.Entry> getTopRated(String mode, int count) {
+        return getRatings().getRanking(mode, 1, count);
+    }
+
+    // Replays the detailed matches in time order on top of the rolled-up ratings
+    private synchronized RatingEngine getRatings() {
+        if (ratings == null) {
+            int[] byTime = gameHistory.query(null, null, Long.MIN_VALUE, Long.MAX_VALUE, true);
+            ratings = RatingEngine.recompute(gameHistory.snapshot(), byTime, rollup.getRatings());
+        }
+        return ratings;
+    }
+
+    private static void accumulate(Map<String, PlayerStats> stats, GameRecord record) {
+        stats.computeIfAbsent(record.player1, _ -> new PlayerStats())
+             .updateStats(record.player1Score, record.player2Score);
+        stats.computeIfAbsent(record.player2, _ -> new PlayerStats())
+             .updateStats(record.player2Score, record.player1Score);
+    }
+
+    private static Map<String, PlayerStats> copyStats(Map<String, PlayerStats> stats) {
+        Map<String, PlayerStats> copy = new HashMap<>();
+        for (Map.Entry<String, PlayerStats> entry : stats.entrySet()) {
+            copy.put(entry.getKey(), new PlayerStats(entry.getValue()));
+        }
+        return copy;
     }
 
     public static class PlayerStats {
@@ -266,6 +782,42 @@ public class GameHistoryManager {
         private int totalScore = 0;
         private int totalOpponentScore = 0;
 
+        public PlayerStats() {
+        }
+
+        /**
+         * Creates stats from totals aggregated elsewhere, e.g. by a database query
+         */
+        public PlayerStats(int gamesPlayed, int wins, int losses, int draws, int totalScore, int totalOpponentScore) {
+            this.gamesPlayed = gamesPlayed;
+            this.wins = wins;
+            this.losses = losses;
+            this.draws = draws;
+            this.totalScore = totalScore;
+            this.totalOpponentScore = totalOpponentScore;
+        }
+
+        private PlayerStats(PlayerStats other) {
+            gamesPlayed = other.gamesPlayed;
+            wins = other.wins;
+            losses = other.losses;
+            draws = other.draws;
+            totalScore = other.totalScore;
+            totalOpponentScore = other.totalOpponentScore;
+        }
+
+        /**
+         * Adds another set of totals to these, e.g. to combine days or modes
+         */
+        public void add(PlayerStats other) {
+            gamesPlayed += other.gamesPlayed;
+            wins += other.wins;
+            losses += other.losses;
+            draws += other.draws;
+            totalScore += other.totalScore;
+            totalOpponentScore += other.totalOpponentScore;
+        }
+
         public void updateStats(int score, int opponentScore) {
             gamesPlayed++;
             totalScore += score;
@@ -285,39 +837,156 @@ public class GameHistoryManager {
         public int getLosses() { return losses; }
         public int getDraws() { return draws; }
         public int getTotalScore() { return totalScore; }
+        public int getTotalOpponentScore() { return totalOpponentScore; }
         public double getAverageScore() {
             return gamesPlayed == 0 ? 0 : (double) totalScore / gamesPlayed;
         }
     }
 
     // Add method to get the history file path
+    // For the database store this is its JDBC URL
     public String getHistoryFilePath() {
-        return historyFilePath.toString();
+        return store.getLocation();
     }
 
     // Add method to export history to a different location
+    // The target's name picks the format: .jsonl, BINARY_EXTENSION or CSV, gzip-compressed with a trailing .gz
     public void exportHistory(String targetPath) throws IOException {
-        Path target = Paths.get(targetPath);
-        Files.copy(historyFilePath, target, StandardCopyOption.REPLACE_EXISTING);
+        exportHistory(targetPath, HistoryExporter.Filter.ALL);
+    }
+
+    /**
+     * Exports the records matching a filter on the calling thread
+     */
+    public void exportHistory(String targetPath, HistoryExporter.Filter filter) throws IOException {
+        createExport(targetPath, filter).run();
+    }
+
+    /**
+     * Prepares an export of the current history for submitTask. The export reads from a
+     * snapshot, so matches recorded while it runs are not included.
+     * @param targetPath File to write; its name picks the format as in exportHistory
+     * @param filter Records to include
+     */
+    public HistoryExporter createExport(String targetPath, HistoryExporter.Filter filter) {
+        historyWriter.flush(); // Include records still waiting in the write-behind queue
+        synchronized (this) {
+            // Take the view and the ids together so the ids always refer to rows of the view
+            int[] rows = filter.isAll() ? null
+                : gameHistory.query(filter.player, filter.mode, filter.fromMillis, filter.toMillis);
+            return new HistoryExporter(gameHistory.snapshot(), rows, Paths.get(targetPath));
+        }
     }
 
-    // Add method to import history from a file
+    /**
+     * Runs a history task on the background task thread, after any tasks submitted before it
+     * @return Completes with the task's result, or exceptionally with its IOException or a
+     *         CancellationException if it was cancelled
+     */
+    public <T> CompletableFuture<T> submitTask(HistoryTask<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.run();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, taskExecutor);
+    }
+
+    /**
+     * Prepares a merge for submitTask: the records of another history file (CSV or binary)
+     * that aren't already in the history are added, keeping the current records. Used to
+     * consolidate several machines' histories.
+     */
+    public HistoryMerger createMerge(String sourcePath) {
+        return new HistoryMerger(this, Paths.get(sourcePath));
+    }
+
+    /**
+     * Prepares a check of every record of the history file against its checksum, for
+     * submitTask. The task's result is what was found in the file before any repair.
+     * Progress is counted in bytes.
+     * @param repair Whether to rewrite the file without its damaged lines: from the history in
+     *               memory when it holds the whole file, otherwise from the intact lines, which
+     *               are then loaded again. The original is kept as a backup.
+     * @throws IllegalStateException If the history isn't kept in a CSV file
+     */
+    public HistoryTask<HistoryVerifier.Report> createVerifyTask(boolean repair) {
+        if (!(store instanceof CsvHistoryStore csv)) {
+            throw new IllegalStateException("Only CSV history files can be verified; "
+                + store.getClass().getSimpleName() + " checks its own records");
+        }
+        return new HistoryTask<>((repair ? "Repair " : "Verify ") + "game history", HistoryTask.BYTES) {
+            @Override
+            protected HistoryVerifier.Report execute() throws IOException {
+                if (!repair) {
+                    return csv.verify(this);
+                }
+                HistoryVerifier.Report report = writeInOrder(snapshot -> () -> csv.repair(snapshot, this));
+                // Loads a salvaged file again, or takes in other processes' records the rewrite kept
+                pollExternalChanges();
+                return report;
+            }
+        };
+    }
+
+    // Add method to import history from a file, either CSV or the binary columnar format
     public void importHistory(String sourcePath) throws IOException {
+        createImport(sourcePath).run();
+    }
+
+    /**
+     * Prepares an import that replaces the history, for submitTask; see importHistory.
+     * Progress is counted in bytes of a CSV file. Cancelling before the file has been
+     * read leaves the current history alone.
+     */
+    public HistoryTask<Integer> createImport(String sourcePath) {
+        return new HistoryTask<>("Import " + Paths.get(sourcePath).getFileName(), HistoryTask.BYTES) {
+            @Override
+            protected Integer execute() throws IOException {
+                return importFrom(sourcePath, this);
+            }
+        };
+    }
+
+    private int importFrom(String sourcePath, HistoryTask<Integer> task) throws IOException {
         Path source = Paths.get(sourcePath);
         if (!Files.exists(source)) {
             throw new FileNotFoundException("Source file not found: " + sourcePath);
         }
+        // Read the file up front so a bad file leaves the current history alone
+        HistoryColumns imported;
+        if (HistoryColumns.isBinaryHistoryFile(source)) {
+            imported = HistoryColumns.readFrom(source);
+        } else {
+            imported = new HistoryColumns();
+            ParallelHistoryImporter.ImportResult result = new ParallelHistoryImporter()
+                .importInto(source, CsvHistoryStore.HEADER, imported, task);
+            if (!result.headerMatched) {
+                throw new IOException("Not a game history CSV file: " + sourcePath);
+            }
+            System.out.println(String.format("Imported %d history records in %.1f ms (%.0f records/s, %.1f MB/s, %d chunks, %d errors)",
+                result.records, result.getElapsedMillis(), result.getRecordsPerSecond(),
+                result.getMegabytesPerSecond(), result.chunks, result.errors));
+        }
         
-        // Backup current history
-        backupExistingFile();
-        
-        // Clear current history
-        gameHistory.clear();
-        
-        // Copy the new file
-        Files.copy(source, historyFilePath, StandardCopyOption.REPLACE_EXISTING);
+        task.checkCancelled();
+
+        // Backup current history, including records still waiting in the write-behind queue
+        historyWriter.flush();
+        backupHistory();
         
-        // Reload history
-        loadHistory();
+        // Replace the current history and persist it to the store
+        replaceWith(imported);
+        rewriteStore(() -> replaceWith(imported));
+        return imported.size();
+    }
+
+    private synchronized void replaceWith(HistoryColumns imported) {
+        gameHistory = imported;
+        rollup.clear(); // The imported file is the whole history
+        saveRollup();
+        historyVersion++;
+        invalidateAggregates();
     }
-}
\ No newline at end of file
+}
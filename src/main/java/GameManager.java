@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,8 +37,21 @@ public class GameManager {
     private String lastComputerMove = null;
     private int repeatMoveCount = 0;
     
+    // Incremental cycle detection over the player's moves
+    private static final int MAX_DETECTED_PERIOD = 8;
+    private static final double MIN_PERIOD_CONFIDENCE = 0.6;
+    private final PeriodDetector periodDetector = new PeriodDetector(MAX_DETECTED_PERIOD);
+    
+    // Latency budget for a computer move, and how often it ran out per difficulty
+    private final long moveBudgetNanos;
+    private final Map<AIDifficulty, long[]> deadlineStats = new EnumMap<>(AIDifficulty.class); // {decisions, deadline hits}
+    
     public GameManager() {
         this.gameAI = new GameAI();
+        this.moveBudgetNanos = ConfigManager.getInstance().getInt("ai_move_budget_ms", 5) * 1_000_000L;
+        for (AIDifficulty level : AIDifficulty.values()) {
+            deadlineStats.put(level, new long[2]);
+        }
         initializeFrequencyMap();
         // Set initial difficulty
         gameAI.setDifficultyLevel(difficulty.name());
@@ -68,7 +82,8 @@ public class GameManager {
     }
     
     /**
-     * Records a player's move for analysis
+     * Records a player's move for analysis; call it after getComputerMove() for the
+     * same round, so the computer's choice never depends on the move it answers
      * @param move The player's move ("Rock", "Paper", or "Scissors")
      */
     public void recordPlayerMove(String move) {
@@ -78,6 +93,7 @@ public class GameManager {
         // Update our own tracking data
         playerMoveHistory.add(move);
         moveFrequency.put(move, moveFrequency.get(move) + 1);
+        periodDetector.recordMove(move);
         
         // Update counts for simple frequency analysis
         if (move.equals("Rock")) rockCount++;
@@ -95,13 +111,81 @@ public class GameManager {
     }
     
     /**
-     * Generates a computer move based on the AI difficulty and player history
+     * Generates a computer move based on the AI difficulty and player history,
+     * within the configured latency budget
      * @return The computer's move ("Rock", "Paper", or "Scissors")
      */
     public String getComputerMove() {
+        return getComputerMove(System.nanoTime() + moveBudgetNanos);
+    }
+    
+    /**
+     * Anytime variant of getComputerMove(): predictors run in priority order and the
+     * best answer available when the deadline passes is returned
+     * @param deadlineNanos Deadline as a System.nanoTime() value
+     * @return The computer's move ("Rock", "Paper", or "Scissors")
+     */
+    public String getComputerMove(long deadlineNanos) {
+        long[] stats = deadlineStats.get(difficulty);
+        stats[0]++;
+        
+        // In HARD mode, a player stuck in a cycle gets countered directly
+        if (difficulty == AIDifficulty.HARD) {
+            String cycleMove = detectSimplePattern();
+            if (cycleMove != null) {
+                return gameAI.predictNextMove(cycleMove);
+            }
+        }
+        
         // Use the GameAI to get a move based on the difficulty setting
         // This will automatically handle win percentages
-        return gameAI.predictNextMove();
+        String move = gameAI.predictNextMove(deadlineNanos);
+        if (gameAI.isLastDecisionTimedOut()) {
+            stats[1]++;
+        }
+        return move;
+    }
+    
+    /**
+     * Gets how often move selection ran out of time at a difficulty level
+     * @param level The difficulty level
+     * @return Fraction of moves that hit the deadline, between 0 and 1
+     */
+    public double getDeadlineHitRate(AIDifficulty level) {
+        long[] stats = deadlineStats.get(level);
+        return stats[0] == 0 ? 0.0 : (double) stats[1] / stats[0];
+    }
+    
+    /**
+     * Gets how predictable the player has been over recent matches
+     * @return 0 for a random player up to 1 for a fully predictable one, or -1 if too few moves were seen
+     */
+    public double getPlayerPredictability() {
+        return gameAI.getPlayerPredictability();
+    }
+    
+    /**
+     * Gets the pattern the AI read the player's last move from
+     * @return The prediction, or null if the last computer move was not pattern-based
+     */
+    public ContextSketch.Prediction getLastPrediction() {
+        return gameAI.getLastPrediction();
+    }
+    
+    /**
+     * Gets the strongest cycle length seen in the player's moves
+     * @return The period length, or 0 if the player is not cycling
+     */
+    public int getDetectedPeriod() {
+        return periodDetector.getStrongestPeriod();
+    }
+    
+    /**
+     * Gets the confidence of the strongest detected cycle
+     * @return Confidence between 0 and 1
+     */
+    public double getDetectedPeriodConfidence() {
+        return periodDetector.getConfidence();
     }
     
     /**
@@ -123,11 +207,9 @@ public class GameManager {
             }
             
             // Check if player tends to rotate in a fixed pattern
-            if (playerMoveHistory.size() >= 5) {
-                String potentialPattern = detectSimplePattern();
-                if (potentialPattern != null) {
-                    return potentialPattern;
-                }
+            String potentialPattern = detectSimplePattern();
+            if (potentialPattern != null) {
+                return potentialPattern;
             }
         }
         
@@ -136,28 +218,12 @@ public class GameManager {
     }
     
     /**
-     * Detects if player is following a simple pattern like "Rock, Paper, Scissors, Rock, Paper, ..."
+     * Detects if player is following a cycle like "Rock, Paper, Scissors, Rock, Paper, ..."
+     * Any cycle length up to MAX_DETECTED_PERIOD is caught without rescanning history
      * @return Next predicted move based on pattern, or null if no pattern detected
      */
     private String detectSimplePattern() {
-        int size = playerMoveHistory.size();
-        
-        // Check for 2-move patterns
-        if (size >= 4 && 
-            playerMoveHistory.get(size-2).equals(playerMoveHistory.get(size-4)) && 
-            playerMoveHistory.get(size-1).equals(playerMoveHistory.get(size-3))) {
-            return playerMoveHistory.get(size-2);
-        }
-        
-        // Check for 3-move patterns
-        if (size >= 6 && 
-            playerMoveHistory.get(size-3).equals(playerMoveHistory.get(size-6)) && 
-            playerMoveHistory.get(size-2).equals(playerMoveHistory.get(size-5)) && 
-            playerMoveHistory.get(size-1).equals(playerMoveHistory.get(size-4))) {
-            return playerMoveHistory.get(size-3);
-        }
-        
-        return null;
+        return periodDetector.predictNextMove(MIN_PERIOD_CONFIDENCE);
     }
     
     /**
@@ -195,10 +261,22 @@ public class GameManager {
         };
     }
     
+    /**
+     * Forgets what was learned about the player across matches, for when a different
+     * player takes over or the game mode changes; call reset() as well for a new match
+     */
+    public void forgetPlayer() {
+        gameAI.forgetPlayer();
+    }
+    
     /**
      * Resets the game state and history
      */
     public void reset() {
+        // Fold this match's opening into the shared opening book before forgetting it
+        if (!playerMoveHistory.isEmpty()) {
+            OpeningBook.getInstance().recordOpening(playerMoveHistory);
+        }
         playerMoveHistory.clear();
         initializeFrequencyMap();
         rockCount = 0;
@@ -207,6 +285,7 @@ public class GameManager {
         lastPlayerMove = null;
         lastComputerMove = null;
         repeatMoveCount = 0;
+        periodDetector.reset();
         gameAI.reset();
     }
 }
@@ -0,0 +1,830 @@
+import java.io.*;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.WeekFields;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Columnar in-memory match history.
+ * Player names and modes are dictionary-encoded to int ids, scores are plain ints,
+ * dates are epoch millis and the result is a one-byte code, so aggregates run as
+ * tight loops over primitive arrays. The same layout is used for the binary
+ * history file format read and written by readFrom/writeTo.
+ * Secondary indexes by player, mode and date are maintained on append for queries.
+ * Column arrays are only ever replaced, never rewritten below the current size, so
+ * snapshot() can hand out a consistent read-only view in O(1) while appends continue.
+ */
+public class HistoryColumns {
+    private static final int FILE_MAGIC = 0x52505348; // "RPSH"
+    private static final int FILE_VERSION = 1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Result codes
+    private static final byte RESULT_PLAYER1_WON = 0;
+    private static final byte RESULT_PLAYER2_WON = 1;
+    private static final byte RESULT_DRAW = 2;
+    private static final byte RESULT_OTHER = 3; // Stored verbatim in rawResults
+
+    private static final long NO_TIMESTAMP = GameHistoryManager.GameRecord.NO_TIMESTAMP; // Date kept verbatim in rawDates
+
+    // Dictionaries
+    private StringArrayList names = new StringArrayList();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private StringArrayList modes = new StringArrayList();
+    private final Map<String, Integer> modeIds = new HashMap<>();
+
+    // Columns
+    private int size = 0;
+    private int[] player1 = new int[INITIAL_CAPACITY];
+    private int[] player2 = new int[INITIAL_CAPACITY];
+    private int[] mode = new int[INITIAL_CAPACITY];
+    private int[] player1Score = new int[INITIAL_CAPACITY];
+    private int[] player2Score = new int[INITIAL_CAPACITY];
+    private long[] timestamp = new long[INITIAL_CAPACITY];
+    private byte[] result = new byte[INITIAL_CAPACITY];
+
+    // Rare values that don't fit the encoded columns, by row
+    // Concurrent so snapshots can look values up while rows are appended
+    private Map<Integer, String> rawDates = new ConcurrentHashMap<>();
+    private Map<Integer, String> rawResults = new ConcurrentHashMap<>();
+
+    // Secondary indexes: rows per player id and per mode id in ascending row order,
+    // and rows with a timestamp ordered by that timestamp
+    private final List<IntList> rowsByPlayer = new ArrayList<>();
+    private final List<IntList> rowsByMode = new ArrayList<>();
+    private final IntList rowsByTime = new IntList();
+    // Dated rows older than the end of rowsByTime, merged in on the next query so bulk
+    // loads of unordered history don't pay for an insertion per row
+    private final IntList unsortedByTime = new IntList();
+
+    /**
+     * Append-only string list whose backing array is replaced when it grows, never
+     * rewritten, so a snapshot can keep reading the array it captured
+     */
+    private static class StringArrayList extends AbstractList<String> {
+        String[] values = new String[8];
+        int size = 0;
+
+        @Override
+        public String get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean add(String value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+            return true;
+        }
+    }
+
+    /** Columns rows can be ordered by through Snapshot.sortRows; dates go through the time index instead */
+    public enum SortKey { MODE, PLAYER1, PLAYER2, SCORE, RESULT }
+
+    /**
+     * Immutable view of the rows present when it was taken.
+     * It shares the column arrays instead of copying them; rows appended later go to
+     * positions the view never reads, and clearing starts fresh arrays, so the view
+     * stays consistent without locking once it has been obtained.
+     */
+    public static final class Snapshot implements Iterable<GameHistoryManager.GameRecord> {
+        private final int size;
+        private final String[] names;
+        private final String[] modes;
+        private final int[] player1;
+        private final int[] player2;
+        private final int[] mode;
+        private final int[] player1Score;
+        private final int[] player2Score;
+        private final long[] timestamp;
+        private final byte[] result;
+        private final Map<Integer, String> rawDates;
+        private final Map<Integer, String> rawResults;
+
+        private Snapshot(HistoryColumns columns) {
+            size = columns.size;
+            names = columns.names.values;
+            modes = columns.modes.values;
+            player1 = columns.player1;
+            player2 = columns.player2;
+            mode = columns.mode;
+            player1Score = columns.player1Score;
+            player2Score = columns.player2Score;
+            timestamp = columns.timestamp;
+            result = columns.result;
+            rawDates = columns.rawDates;
+            rawResults = columns.rawResults;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Materializes one row as a record
+         * @param row Row index, in insertion order
+         */
+        public GameHistoryManager.GameRecord get(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+            }
+            String p1 = names[player1[row]];
+            String p2 = names[player2[row]];
+            String recorded = result[row] == RESULT_OTHER ? rawResults.get(row) : null; // Null derives it from the scores
+            if (timestamp[row] == NO_TIMESTAMP) {
+                return new GameHistoryManager.GameRecord(rawDates.get(row), modes[mode[row]], p1, p2,
+                    player1Score[row], player2Score[row], recorded);
+            }
+            return new GameHistoryManager.GameRecord(
+                timestamp[row],
+                modes[mode[row]],
+                p1,
+                p2,
+                player1Score[row],
+                player2Score[row],
+                recorded);
+        }
+
+        /**
+         * Gets a row's first player as a dictionary id, for scans that avoid materializing records
+         */
+        public int player1Id(int row) {
+            return player1[row];
+        }
+
+        public int player2Id(int row) {
+            return player2[row];
+        }
+
+        public int modeId(int row) {
+            return mode[row];
+        }
+
+        public int player1Score(int row) {
+            return player1Score[row];
+        }
+
+        public int player2Score(int row) {
+            return player2Score[row];
+        }
+
+        /**
+         * Gets the player name for a dictionary id
+         */
+        public String name(int id) {
+            return names[id];
+        }
+
+        public String modeName(int id) {
+            return modes[id];
+        }
+
+        /**
+         * Gets an exclusive upper bound for player ids, for sizing arrays indexed by them
+         */
+        public int nameIdLimit() {
+            return names.length;
+        }
+
+        public int modeIdLimit() {
+            return modes.length;
+        }
+
+        /**
+         * Orders rows by one column without materializing records. Each row's key is packed
+         * with its position into a long and the longs are sorted in parallel; names and modes
+         * are ranked once through the dictionary. Ties keep the order the rows were given in,
+         * so sorting by a second column and then by a first orders by both.
+         * Results sort by outcome: player 1 won, player 2 won, draw, anything else.
+         * @param rows Row ids to order, or null for every row in row order
+         */
+        public int[] sortRows(int[] rows, SortKey key) {
+            int count = rows == null ? size : rows.length;
+            int[] nameRanks = key == SortKey.PLAYER1 || key == SortKey.PLAYER2 ? rank(names) : null;
+            int[] modeRanks = key == SortKey.MODE ? rank(modes) : null;
+            long[] packed = new long[count];
+            for (int i = 0; i < count; i++) {
+                int row = rows == null ? i : rows[i];
+                long value = switch (key) {
+                    case MODE -> modeRanks[mode[row]];
+                    case PLAYER1 -> nameRanks[player1[row]];
+                    case PLAYER2 -> nameRanks[player2[row]];
+                    case SCORE -> clampScore(player1Score[row]) << 15 | clampScore(player2Score[row]);
+                    case RESULT -> result[row];
+                };
+                packed[i] = value << 32 | i;
+            }
+            Arrays.parallelSort(packed);
+            int[] sorted = new int[count];
+            for (int i = 0; i < count; i++) {
+                int position = (int) packed[i];
+                sorted[i] = rows == null ? position : rows[position];
+            }
+            return sorted;
+        }
+
+        // Place of each dictionary entry in name order, by id
+        private static int[] rank(String[] dictionary) {
+            List<Integer> ids = new ArrayList<>();
+            for (int id = 0; id < dictionary.length; id++) {
+                if (dictionary[id] != null) ids.add(id);
+            }
+            ids.sort(Comparator.comparing((Integer id) -> dictionary[id], String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(id -> dictionary[id]));
+            int[] ranks = new int[dictionary.length];
+            for (int i = 0; i < ids.size(); i++) {
+                ranks[ids.get(i)] = i;
+            }
+            return ranks;
+        }
+
+        // Two scores share the 31 bits of a sort key
+        private static long clampScore(int score) {
+            return Math.max(0, Math.min(score, 0x7FFF));
+        }
+
+        /**
+         * Gets the rows as a read-only list that materializes records only as they are read;
+         * subList() pages through it without copying
+         */
+        public List<GameHistoryManager.GameRecord> asList() {
+            return new AbstractList<>() {
+                @Override
+                public GameHistoryManager.GameRecord get(int index) {
+                    return Snapshot.this.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public Iterator<GameHistoryManager.GameRecord> iterator() {
+            return asList().iterator();
+        }
+
+        public Stream<GameHistoryManager.GameRecord> stream() {
+            return asList().stream();
+        }
+
+        /**
+         * Writes the rows in the binary columnar format
+         */
+        public void writeTo(DataOutputStream out) throws IOException {
+            writeTo(out, null);
+        }
+
+        /**
+         * Writes some of the rows in the binary columnar format, straight from the columns
+         * and the dictionary, so a filtered export needs no copy of the selected rows
+         * @param rows Row ids to write in order, or null for every row
+         */
+        public void writeTo(DataOutputStream out, int[] rows) throws IOException {
+            int count = rows == null ? size : rows.length;
+            // Dictionary entries added after the snapshot are not part of it; the rows tell which are
+            int nameCount = 0;
+            int modeCount = 0;
+            for (int i = 0; i < count; i++) {
+                int row = rows == null ? i : rows[i];
+                nameCount = Math.max(nameCount, Math.max(player1[row], player2[row]) + 1);
+                modeCount = Math.max(modeCount, mode[row] + 1);
+            }
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(count);
+            writeStrings(out, Arrays.asList(names).subList(0, nameCount));
+            writeStrings(out, Arrays.asList(modes).subList(0, modeCount));
+            for (int i = 0; i < count; i++) out.writeInt(player1[rows == null ? i : rows[i]]);
+            for (int i = 0; i < count; i++) out.writeInt(player2[rows == null ? i : rows[i]]);
+            for (int i = 0; i < count; i++) out.writeInt(mode[rows == null ? i : rows[i]]);
+            for (int i = 0; i < count; i++) out.writeInt(player1Score[rows == null ? i : rows[i]]);
+            for (int i = 0; i < count; i++) out.writeInt(player2Score[rows == null ? i : rows[i]]);
+            for (int i = 0; i < count; i++) out.writeLong(timestamp[rows == null ? i : rows[i]]);
+            if (rows == null) {
+                out.write(result, 0, size);
+            } else {
+                for (int row : rows) out.writeByte(result[row]);
+            }
+            writeSparse(out, selectSparse(rawDates, rows), count);
+            writeSparse(out, selectSparse(rawResults, rows), count);
+        }
+
+        // Sparse values keyed by position among the written rows
+        private static Map<Integer, String> selectSparse(Map<Integer, String> values, int[] rows) {
+            if (rows == null || values.isEmpty()) {
+                return values;
+            }
+            Map<Integer, String> selected = new HashMap<>();
+            for (int i = 0; i < rows.length; i++) {
+                String value = values.get(rows[i]);
+                if (value != null) selected.put(i, value);
+            }
+            return selected;
+        }
+    }
+
+    /**
+     * Growable list of row ids
+     */
+    private static class IntList {
+        int[] values = new int[8];
+        int size = 0;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void append(GameHistoryManager.GameRecord record) {
+        ensureCapacity(size + 1);
+        int row = size;
+        player1[row] = nameId(record.player1);
+        player2[row] = nameId(record.player2);
+        mode[row] = modeId(record.mode);
+        player1Score[row] = record.player1Score;
+        player2Score[row] = record.player2Score;
+
+        timestamp[row] = record.timestamp;
+        if (record.timestamp == NO_TIMESTAMP) {
+            rawDates.put(row, record.getDate());
+        }
+
+        String recorded = record.getRecordedResult();
+        byte code = recorded != null ? RESULT_OTHER
+            : record.player1Score > record.player2Score ? RESULT_PLAYER1_WON
+            : record.player2Score > record.player1Score ? RESULT_PLAYER2_WON : RESULT_DRAW;
+        result[row] = code;
+        if (code == RESULT_OTHER) {
+            rawResults.put(row, recorded);
+        }
+        size++;
+        indexRow(row);
+    }
+
+    /**
+     * Finds rows matching every given condition, using the most selective index
+     * @param player Player name that took part as either player, or null for any
+     * @param mode Game mode, or null for any
+     * @param fromMillis Earliest epoch millis, inclusive; Long.MIN_VALUE for no lower bound
+     * @param toMillis Latest epoch millis, exclusive; Long.MAX_VALUE for no upper bound
+     * @return Matching row ids in ascending order
+     */
+    public int[] query(String player, String mode, long fromMillis, long toMillis) {
+        return query(player, mode, fromMillis, toMillis, false);
+    }
+
+    /**
+     * Finds rows matching every given condition, optionally ordered by date
+     * @param orderByTime Whether to return rows oldest first (rows without a parsable date last)
+     *                    instead of in row order
+     * @see #query(String, String, long, long)
+     */
+    public int[] query(String player, String mode, long fromMillis, long toMillis, boolean orderByTime) {
+        boolean byDate = fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE;
+        mergeUnsortedByTime();
+        int playerId = -1;
+        int modeId = -1;
+        if (player != null) {
+            Integer id = nameIds.get(player);
+            if (id == null) return new int[0];
+            playerId = id;
+        }
+        if (mode != null) {
+            Integer id = modeIds.get(mode);
+            if (id == null) return new int[0];
+            modeId = id;
+        }
+
+        // Start from the smallest candidate set
+        int[] candidates = null;
+        int candidateFrom = 0;
+        int candidateTo = size;
+        boolean sortedByRow = true;
+        if (playerId >= 0) {
+            IntList rows = rowsByPlayer.get(playerId);
+            candidates = rows.values;
+            candidateTo = rows.size;
+        }
+        if (modeId >= 0 && (candidates == null || rowsByMode.get(modeId).size < candidateTo - candidateFrom)) {
+            IntList rows = rowsByMode.get(modeId);
+            candidates = rows.values;
+            candidateFrom = 0;
+            candidateTo = rows.size;
+        }
+        if (byDate) {
+            int from = lowerBound(fromMillis);
+            int to = lowerBound(toMillis);
+            if (candidates == null || to - from < candidateTo - candidateFrom) {
+                candidates = rowsByTime.values;
+                candidateFrom = from;
+                candidateTo = to;
+                sortedByRow = false;
+            }
+        }
+
+        IntList matches = new IntList();
+        if (orderByTime && sortedByRow) {
+            // Walk the time index instead, so the result comes out in date order
+            candidates = rowsByTime.values;
+            candidateFrom = lowerBound(fromMillis);
+            candidateTo = byDate ? lowerBound(toMillis) : rowsByTime.size;
+            sortedByRow = false;
+            if (!byDate) {
+                collectMatches(matches, candidates, candidateFrom, candidateTo, playerId, modeId, false, fromMillis, toMillis);
+                // Rows without a parsable date are not in the time index
+                int[] undated = rawDates.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+                collectMatches(matches, undated, 0, undated.length, playerId, modeId, false, fromMillis, toMillis);
+                return Arrays.copyOf(matches.values, matches.size);
+            }
+        }
+        if (candidates == null) {
+            for (int row = 0; row < size; row++) matches.add(row);
+        } else {
+            collectMatches(matches, candidates, candidateFrom, candidateTo, playerId, modeId, byDate, fromMillis, toMillis);
+        }
+        int[] ids = Arrays.copyOf(matches.values, matches.size);
+        if (!sortedByRow && !orderByTime) Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Counts the rows of one mode straight from the mode index
+     */
+    public int countByMode(String mode) {
+        Integer id = modeIds.get(mode);
+        return id == null || id >= rowsByMode.size() ? 0 : rowsByMode.get(id).size;
+    }
+
+    /**
+     * Bucket widths for statsByTime, in local time
+     */
+    public enum TimeBucket { HOUR, DAY, WEEK }
+
+    /**
+     * Aggregates one player's results per hour, day or week in a single pass over the date index
+     * @param player Player whose results are counted, from their side of each match
+     * @param mode Game mode, or null for any
+     * @param fromMillis Earliest epoch millis, inclusive; Long.MIN_VALUE for no lower bound
+     * @param toMillis Latest epoch millis, exclusive; Long.MAX_VALUE for no upper bound
+     * @param bucket Bucket width
+     * @return Stats by bucket start in epoch millis, oldest first; buckets without games are left out
+     */
+    public SortedMap<Long, GameHistoryManager.PlayerStats> statsByTime(String player, String mode,
+                                                                      long fromMillis, long toMillis, TimeBucket bucket) {
+        SortedMap<Long, GameHistoryManager.PlayerStats> buckets = new TreeMap<>();
+        Integer playerId = nameIds.get(player);
+        if (playerId == null) return buckets;
+
+        ZoneId zone = ZoneId.systemDefault();
+        long bucketEnd = Long.MIN_VALUE;
+        GameHistoryManager.PlayerStats stats = null;
+        for (int row : query(player, mode, fromMillis, toMillis, true)) {
+            long millis = timestamp[row];
+            if (millis == NO_TIMESTAMP) break; // Undated rows come last
+            if (millis >= bucketEnd) {
+                // Rows are in time order, so zone arithmetic only happens once per bucket
+                ZonedDateTime start = bucketStart(Instant.ofEpochMilli(millis).atZone(zone), bucket);
+                bucketEnd = bucketEnd(start, bucket).toInstant().toEpochMilli();
+                stats = new GameHistoryManager.PlayerStats();
+                buckets.put(start.toInstant().toEpochMilli(), stats);
+            }
+            if (player1[row] == playerId) {
+                stats.updateStats(player1Score[row], player2Score[row]);
+            } else {
+                stats.updateStats(player2Score[row], player1Score[row]);
+            }
+        }
+        return buckets;
+    }
+
+    static ZonedDateTime bucketStart(ZonedDateTime time, TimeBucket bucket) {
+        return switch (bucket) {
+            case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> time.toLocalDate().atStartOfDay(time.getZone());
+            case WEEK -> time.toLocalDate().with(WeekFields.of(Locale.getDefault()).dayOfWeek(), 1).atStartOfDay(time.getZone());
+        };
+    }
+
+    // Whole calendar units, so days and weeks spanning a DST change still end at midnight
+    private static ZonedDateTime bucketEnd(ZonedDateTime start, TimeBucket bucket) {
+        return switch (bucket) {
+            case HOUR -> start.plusHours(1);
+            case DAY -> start.toLocalDate().plusDays(1).atStartOfDay(start.getZone());
+            case WEEK -> start.toLocalDate().plusWeeks(1).atStartOfDay(start.getZone());
+        };
+    }
+
+    private void collectMatches(IntList matches, int[] candidates, int from, int to,
+                                int playerId, int modeId, boolean byDate, long fromMillis, long toMillis) {
+        for (int i = from; i < to; i++) {
+            int row = candidates[i];
+            if (playerId >= 0 && player1[row] != playerId && player2[row] != playerId) continue;
+            if (modeId >= 0 && mode[row] != modeId) continue;
+            if (byDate && (timestamp[row] == NO_TIMESTAMP || timestamp[row] < fromMillis || timestamp[row] >= toMillis)) continue;
+            matches.add(row);
+        }
+    }
+
+    private void indexRow(int row) {
+        while (rowsByPlayer.size() < names.size()) rowsByPlayer.add(new IntList());
+        while (rowsByMode.size() < modes.size()) rowsByMode.add(new IntList());
+        rowsByPlayer.get(player1[row]).add(row);
+        if (player2[row] != player1[row]) {
+            rowsByPlayer.get(player2[row]).add(row);
+        }
+        rowsByMode.get(mode[row]).add(row);
+
+        long millis = timestamp[row];
+        if (millis == NO_TIMESTAMP) return;
+        if (rowsByTime.size == 0 || timestamp[rowsByTime.values[rowsByTime.size - 1]] <= millis) {
+            rowsByTime.add(row); // Usual case: records arrive in time order
+        } else {
+            unsortedByTime.add(row);
+        }
+    }
+
+    // Sorts the rows that arrived out of order and merges them into rowsByTime,
+    // equal timestamps staying in row order
+    private void mergeUnsortedByTime() {
+        if (unsortedByTime.size == 0) return;
+        Integer[] pending = new Integer[unsortedByTime.size];
+        for (int i = 0; i < pending.length; i++) pending[i] = unsortedByTime.values[i];
+        Arrays.sort(pending, (a, b) -> timestamp[a] != timestamp[b]
+            ? Long.compare(timestamp[a], timestamp[b]) : Integer.compare(a, b));
+
+        int[] sorted = rowsByTime.values;
+        int[] merged = new int[Math.max(8, rowsByTime.size + pending.length)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < rowsByTime.size && j < pending.length) {
+            int a = sorted[i];
+            int b = pending[j];
+            boolean takeSorted = timestamp[a] < timestamp[b] || (timestamp[a] == timestamp[b] && a < b);
+            merged[k++] = takeSorted ? sorted[i++] : pending[j++];
+        }
+        while (i < rowsByTime.size) merged[k++] = sorted[i++];
+        while (j < pending.length) merged[k++] = pending[j++];
+        rowsByTime.values = merged;
+        rowsByTime.size = k;
+        unsortedByTime.clear();
+    }
+
+    // First position in rowsByTime whose timestamp is >= millis
+    private int lowerBound(long millis) {
+        int low = 0;
+        int high = rowsByTime.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamp[rowsByTime.values[mid]] < millis) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Whether a row at this time would sort after every existing row by time, undated rows
+     * last, so that appending it keeps insertion order and time order the same
+     */
+    public boolean isLatest(long millis) {
+        if (millis == NO_TIMESTAMP) return true;
+        return rawDates.isEmpty() && (rowsByTime.size == 0 || timestamp[rowsByTime.values[rowsByTime.size - 1]] <= millis);
+    }
+
+    /**
+     * Materializes one row as a record
+     * @param row Row index, in insertion order
+     */
+    public GameHistoryManager.GameRecord get(int row) {
+        return snapshot().get(row);
+    }
+
+    /**
+     * Takes a read-only view of the current rows in O(1), without copying them
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    // Starts over with fresh arrays and maps rather than reusing them, so existing snapshots keep their rows
+    public void clear() {
+        names = new StringArrayList();
+        nameIds.clear();
+        modes = new StringArrayList();
+        modeIds.clear();
+        rawDates = new ConcurrentHashMap<>();
+        rawResults = new ConcurrentHashMap<>();
+        player1 = new int[INITIAL_CAPACITY];
+        player2 = new int[INITIAL_CAPACITY];
+        mode = new int[INITIAL_CAPACITY];
+        player1Score = new int[INITIAL_CAPACITY];
+        player2Score = new int[INITIAL_CAPACITY];
+        timestamp = new long[INITIAL_CAPACITY];
+        result = new byte[INITIAL_CAPACITY];
+        rowsByPlayer.clear();
+        rowsByMode.clear();
+        rowsByTime.clear();
+        unsortedByTime.clear();
+        size = 0;
+    }
+
+    /**
+     * Aggregates per-player stats across all modes
+     */
+    public Map<String, GameHistoryManager.PlayerStats> leaderboard() {
+        GameHistoryManager.PlayerStats[] byPlayer = new GameHistoryManager.PlayerStats[names.size()];
+        for (int row = 0; row < size; row++) {
+            accumulate(byPlayer, row);
+        }
+        return toNameMap(byPlayer);
+    }
+
+    /**
+     * Aggregates per-player stats separately for each mode
+     */
+    public Map<String, Map<String, GameHistoryManager.PlayerStats>> leaderboardByMode() {
+        GameHistoryManager.PlayerStats[][] byMode = new GameHistoryManager.PlayerStats[modes.size()][names.size()];
+        for (int row = 0; row < size; row++) {
+            accumulate(byMode[mode[row]], row);
+        }
+        Map<String, Map<String, GameHistoryManager.PlayerStats>> statsByMode = new HashMap<>();
+        for (int m = 0; m < byMode.length; m++) {
+            statsByMode.put(modes.get(m), toNameMap(byMode[m]));
+        }
+        return statsByMode;
+    }
+
+    /**
+     * Writes all rows in the binary columnar format
+     */
+    public void writeTo(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            writeTo(out);
+        }
+    }
+
+    /**
+     * Writes all rows in the binary columnar format to a stream, e.g. inside another file
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        snapshot().writeTo(out);
+    }
+
+    /**
+     * Reads rows written by writeTo
+     */
+    public static HistoryColumns readFrom(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return readFrom(in, file.toString());
+        }
+    }
+
+    /**
+     * Reads rows written by writeTo(DataOutputStream)
+     * @param source Name of the stream's origin, for error messages
+     */
+    public static HistoryColumns readFrom(DataInputStream in, String source) throws IOException {
+        if (in.readInt() != FILE_MAGIC) {
+            throw new IOException("Not a binary history file: " + source);
+        }
+        int version = in.readInt();
+        if (version != FILE_VERSION) {
+            throw new IOException("Unsupported binary history version " + version + ": " + source);
+        }
+        HistoryColumns columns = new HistoryColumns();
+        int rows = in.readInt();
+        for (String name : readStrings(in)) columns.nameId(name);
+        for (String m : readStrings(in)) columns.modeId(m);
+        columns.ensureCapacity(rows);
+        for (int i = 0; i < rows; i++) columns.player1[i] = in.readInt();
+        for (int i = 0; i < rows; i++) columns.player2[i] = in.readInt();
+        for (int i = 0; i < rows; i++) columns.mode[i] = in.readInt();
+        for (int i = 0; i < rows; i++) columns.player1Score[i] = in.readInt();
+        for (int i = 0; i < rows; i++) columns.player2Score[i] = in.readInt();
+        for (int i = 0; i < rows; i++) columns.timestamp[i] = in.readLong();
+        in.readFully(columns.result, 0, rows);
+        columns.rawDates.putAll(readSparse(in));
+        columns.rawResults.putAll(readSparse(in));
+        columns.size = rows;
+        for (int row = 0; row < rows; row++) {
+            columns.indexRow(row);
+        }
+        return columns;
+    }
+
+    /**
+     * Checks whether a file starts with the binary history header
+     */
+    public static boolean isBinaryHistoryFile(Path file) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == FILE_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void accumulate(GameHistoryManager.PlayerStats[] byPlayer, int row) {
+        int p1 = player1[row];
+        int p2 = player2[row];
+        if (byPlayer[p1] == null) byPlayer[p1] = new GameHistoryManager.PlayerStats();
+        if (byPlayer[p2] == null) byPlayer[p2] = new GameHistoryManager.PlayerStats();
+        byPlayer[p1].updateStats(player1Score[row], player2Score[row]);
+        byPlayer[p2].updateStats(player2Score[row], player1Score[row]);
+    }
+
+    private Map<String, GameHistoryManager.PlayerStats> toNameMap(GameHistoryManager.PlayerStats[] byPlayer) {
+        Map<String, GameHistoryManager.PlayerStats> stats = new HashMap<>();
+        for (int id = 0; id < byPlayer.length; id++) {
+            if (byPlayer[id] != null) {
+                stats.put(names.get(id), byPlayer[id]);
+            }
+        }
+        return stats;
+    }
+
+    private int nameId(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    private int modeId(String m) {
+        Integer id = modeIds.get(m);
+        if (id == null) {
+            id = modes.size();
+            modes.add(m);
+            modeIds.put(m, id);
+        }
+        return id;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= player1.length) return;
+        int newCapacity = Math.max(capacity, player1.length * 2);
+        player1 = Arrays.copyOf(player1, newCapacity);
+        player2 = Arrays.copyOf(player2, newCapacity);
+        mode = Arrays.copyOf(mode, newCapacity);
+        player1Score = Arrays.copyOf(player1Score, newCapacity);
+        player2Score = Arrays.copyOf(player2Score, newCapacity);
+        timestamp = Arrays.copyOf(timestamp, newCapacity);
+        result = Arrays.copyOf(result, newCapacity);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) out.writeUTF(value);
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) values.add(in.readUTF());
+        return values;
+    }
+
+    // Only entries of the first rows, as later ones may be added while writing
+    private static void writeSparse(DataOutputStream out, Map<Integer, String> values, int rows) throws IOException {
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>();
+        for (Map.Entry<Integer, String> entry : values.entrySet()) {
+            if (entry.getKey() < rows) entries.add(entry);
+        }
+        out.writeInt(entries.size());
+        for (Map.Entry<Integer, String> entry : entries) {
+            out.writeInt(entry.getKey());
+            out.writeUTF(entry.getValue());
+        }
+    }
+
+    private static Map<Integer, String> readSparse(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<Integer, String> values = new HashMap<>();
+        for (int i = 0; i < count; i++) values.put(in.readInt(), in.readUTF());
+        return values;
+    }
+}
@@ -0,0 +1,220 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams history rows to a file as CSV, JSON Lines or the binary columnar format,
+ * optionally gzip-compressed. Rows are read one at a time from a snapshot and written
+ * through a buffered file channel, so memory use doesn't grow with the history.
+ * The file is written under a temporary name and only moved into place when complete.
+ */
+public final class HistoryExporter extends HistoryTask<Long> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 4096; // Rows between progress updates and cancellation checks
+
+    public enum Format {
+        CSV, JSON_LINES, BINARY;
+
+        /**
+         * Picks the format from a file name: .jsonl / .ndjson, the binary extension, or CSV,
+         * with an optional .gz suffix
+         */
+        public static Format forFile(String fileName) {
+            String name = stripGzip(fileName.toLowerCase());
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) return JSON_LINES;
+            if (name.endsWith(GameHistoryManager.BINARY_EXTENSION)) return BINARY;
+            return CSV;
+        }
+    }
+
+    /**
+     * Which records to export; null fields and open bounds match everything
+     */
+    public static class Filter {
+        public static final Filter ALL = new Filter(null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        public final String player;
+        public final String mode;
+        public final long fromMillis;
+        public final long toMillis;
+
+        /**
+         * @param player Player name that took part as either player, or null for any
+         * @param mode Game mode ("PvC" or "PvP"), or null for any
+         * @param fromMillis Earliest epoch millis, inclusive; Long.MIN_VALUE for no lower bound
+         * @param toMillis Latest epoch millis, exclusive; Long.MAX_VALUE for no upper bound
+         */
+        public Filter(String player, String mode, long fromMillis, long toMillis) {
+            this.player = player;
+            this.mode = mode;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+        }
+
+        public boolean isAll() {
+            return player == null && mode == null && fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE;
+        }
+    }
+
+    private final HistoryColumns.Snapshot snapshot;
+    private final int[] rows; // Rows to export in order, or null for the whole snapshot
+    private final Path target;
+    private final Format format;
+    private final boolean compressed;
+
+    /**
+     * @param snapshot History to read from
+     * @param rows Row ids of the snapshot to export, e.g. from a filtered query; null for every row
+     * @param target File to write; its name selects the format and compression
+     */
+    public HistoryExporter(HistoryColumns.Snapshot snapshot, int[] rows, Path target) {
+        super("Export to " + target.getFileName());
+        this.snapshot = snapshot;
+        this.rows = rows;
+        this.target = target;
+        this.format = Format.forFile(target.getFileName().toString());
+        this.compressed = target.getFileName().toString().toLowerCase().endsWith(".gz");
+        setTotal(rows == null ? snapshot.size() : rows.length);
+    }
+
+    /**
+     * Writes the file
+     * @return The number of records exported
+     */
+    @Override
+    protected Long execute() throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(parent, "export_", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 OutputStream out = open(channel)) {
+                switch (format) {
+                    case JSON_LINES -> writeJsonLines(out);
+                    case BINARY -> writeBinary(out);
+                    default -> writeCsv(out);
+                }
+                out.flush();
+                channel.force(false);
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return getTotal();
+    }
+
+    private OutputStream open(FileChannel channel) throws IOException {
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        return compressed ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+    }
+
+    private void writeCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write(CsvHistoryStore.CHECKSUM_HEADER);
+        writer.write('\n');
+        int count = exportCount();
+        for (int i = 0; i < count; i++) {
+            writer.write(CsvHistoryStore.formatLine(record(i)));
+            writer.write('\n');
+            progress(i);
+        }
+        writer.flush();
+        setProcessed(count);
+    }
+
+    // One JSON object per line; timestamp is null for records whose date couldn't be parsed
+    private void writeJsonLines(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        StringBuilder line = new StringBuilder(256);
+        int count = exportCount();
+        for (int i = 0; i < count; i++) {
+            GameHistoryManager.GameRecord record = record(i);
+            line.setLength(0);
+            line.append("{\"date\":");
+            appendJsonString(line, record.getDate());
+            line.append(",\"timestamp\":")
+                .append(record.timestamp == GameHistoryManager.GameRecord.NO_TIMESTAMP ? "null" : String.valueOf(record.timestamp));
+            line.append(",\"mode\":");
+            appendJsonString(line, record.mode);
+            line.append(",\"player1\":");
+            appendJsonString(line, record.player1);
+            line.append(",\"player2\":");
+            appendJsonString(line, record.player2);
+            line.append(",\"player1Score\":").append(record.player1Score);
+            line.append(",\"player2Score\":").append(record.player2Score);
+            line.append(",\"result\":");
+            appendJsonString(line, record.getResult());
+            line.append("}\n");
+            writer.append(line);
+            progress(i);
+        }
+        writer.flush();
+        setProcessed(count);
+    }
+
+    // Written column by column from the snapshot, so progress is only reported at the end
+    private void writeBinary(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        checkCancelled();
+        snapshot.writeTo(data, rows);
+        data.flush();
+        setProcessed(exportCount());
+    }
+
+    private int exportCount() {
+        return rows == null ? snapshot.size() : rows.length;
+    }
+
+    private GameHistoryManager.GameRecord record(int index) {
+        return snapshot.get(rows == null ? index : rows[index]);
+    }
+
+    private void progress(int index) {
+        if (index % PROGRESS_INTERVAL == 0) {
+            setProcessed(index);
+            checkCancelled();
+        }
+    }
+
+    private static void appendJsonString(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static String stripGzip(String name) {
+        return name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+    }
+}
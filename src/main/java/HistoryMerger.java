@@ -0,0 +1,214 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Merges another history file into the current history without replacing it.
+ * Every record is reduced to a 64-bit content hash; hashes of the current history
+ * and of records merged so far go into a LongHashSet, and a source record is only
+ * appended when its hash is new. A CSV source is streamed, so memory is the hash set
+ * plus one batch, whatever the size of the file. A binary source is read into memory
+ * as a whole, because its rows are stored column after column: expect about 30 bytes
+ * per record for the columns, plus their indexes and the names. Gzip-compressed
+ * exports are decompressed on the fly; their record count is not estimated. Each batch is
+ * appended as soon as it is complete, so the history grows while the merge runs.
+ * Records from before the retention cutoff are skipped and counted separately: the
+ * roll-up only keeps per-day totals, so merging them again would count them twice.
+ */
+public class HistoryMerger extends HistoryTask<Long> {
+    private static final int BATCH_SIZE = 1000;
+    private static final int ESTIMATE_SAMPLE = 1000; // CSV lines measured to estimate the record count
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final GameHistoryManager history;
+    private final Path source;
+    private long read = 0;
+    private long added = 0;
+    private long duplicates = 0;
+    private long rolledUp = 0;
+    private long sampleBytes = 0;
+
+    public HistoryMerger(GameHistoryManager history, Path source) {
+        super("Merge " + source.getFileName());
+        this.history = history;
+        this.source = source;
+    }
+
+    /**
+     * Appends the source's records that aren't in the history yet. A binary source is
+     * loaded whole before merging, so it must fit in memory next to the history.
+     * @return The number of records added
+     */
+    @Override
+    protected Long execute() throws IOException {
+        if (!Files.exists(source)) {
+            throw new IOException("Source file not found: " + source);
+        }
+        HistoryColumns.Snapshot current = history.getSnapshot();
+        LongHashSet seen = new LongHashSet(current.size());
+        for (GameHistoryManager.GameRecord record : current) {
+            seen.add(contentHash(record));
+        }
+
+        // A CSV file's record count isn't known until it has been read, so it is estimated
+        // from the file size and the length of the first lines
+        long bodyBytes = 0;
+        int lineOverhead = 1;
+        boolean compressed = isGzipFile(source);
+        // A compressed file's name still says what it holds, as when it was exported
+        boolean binary = compressed
+            ? HistoryExporter.Format.forFile(source.getFileName().toString()) == HistoryExporter.Format.BINARY
+            : HistoryColumns.isBinaryHistoryFile(source);
+        if (!binary && !compressed) {
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long[] header = ParallelHistoryImporter.readHeader(channel, size, CsvHistoryStore.HEADER);
+                bodyBytes = size - header[0];
+                if (header[1] == MappedHistoryLoader.FORMAT_CHECKSUMMED) {
+                    lineOverhead += 1 + MappedHistoryLoader.CHECKSUM_DIGITS;
+                }
+            }
+        }
+        long estimateBytes = bodyBytes;
+        int estimateOverhead = lineOverhead;
+
+        List<GameHistoryManager.GameRecord> batch = new ArrayList<>(BATCH_SIZE);
+        MappedHistoryLoader.RecordHandler handler = record -> {
+            read++;
+            if (!binary && !compressed && read <= ESTIMATE_SAMPLE) {
+                sampleBytes += record.toCSV().length() + estimateOverhead;
+                setTotal(estimateBytes * read / sampleBytes);
+            } else if (getTotal() >= 0 && getTotal() < read) {
+                setTotal(read); // The estimate was short
+            }
+            if (seen.add(contentHash(record))) {
+                batch.add(record);
+            } else {
+                duplicates++;
+            }
+            if (batch.size() == BATCH_SIZE) {
+                // Checked per batch; a cancelled merge keeps the batches already appended
+                checkCancelled();
+                appendBatch(batch);
+            }
+            if (read % BATCH_SIZE == 0) {
+                // Also while skipping long runs of duplicates
+                setProcessed(read);
+                checkCancelled();
+            }
+        };
+
+        if (binary) {
+            // Columnar, so a row can't be read until every column has been; see the class comment
+            HistoryColumns columns;
+            if (compressed) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        new GZIPInputStream(Files.newInputStream(source), GZIP_BUFFER_SIZE)))) {
+                    columns = HistoryColumns.readFrom(in, source.toString());
+                }
+            } else {
+                columns = HistoryColumns.readFrom(source);
+            }
+            setTotal(columns.size());
+            for (GameHistoryManager.GameRecord record : columns.snapshot()) {
+                handler.onRecord(record);
+            }
+        } else {
+            MappedHistoryLoader.LoadResult result;
+            if (compressed) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(source), GZIP_BUFFER_SIZE)) {
+                    result = new MappedHistoryLoader().load(in, CsvHistoryStore.HEADER, handler);
+                }
+            } else {
+                result = new MappedHistoryLoader().load(source, CsvHistoryStore.HEADER, handler);
+            }
+            if (!result.headerMatched) {
+                throw new IOException("Not a game history CSV file: " + source);
+            }
+        }
+        if (!batch.isEmpty()) {
+            appendBatch(batch);
+        }
+        setProcessed(read);
+        setTotal(read);
+        return added;
+    }
+
+    private void appendBatch(List<GameHistoryManager.GameRecord> batch) {
+        int skipped = history.appendMerged(batch);
+        rolledUp += skipped;
+        added += batch.size() - skipped;
+        batch.clear();
+    }
+
+    /**
+     * Gets how many source records were skipped as already present
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Gets how many source records were skipped for being older than the retention
+     * period; only the roll-up's per-day totals cover that time
+     */
+    public long getRolledUp() {
+        return rolledUp;
+    }
+
+    // Checks for the gzip magic bytes rather than the name, which may have lost its .gz
+    private static boolean isGzipFile(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return in.read() == 0x1F && in.read() == 0x8B;
+        }
+    }
+
+    /**
+     * Hashes every stored field of a record, so equal records always collide and
+     * different ones practically never do
+     */
+    public static long contentHash(GameHistoryManager.GameRecord record) {
+        long h = 0x2545F4914F6CDD1DL;
+        h = mix(h, record.timestamp);
+        if (record.timestamp == GameHistoryManager.GameRecord.NO_TIMESTAMP) {
+            h = mix(h, hash(record.getDate())); // Unparseable dates are kept as text
+        }
+        h = mix(h, hash(record.mode));
+        h = mix(h, hash(record.player1));
+        h = mix(h, hash(record.player2));
+        h = mix(h, record.player1Score);
+        h = mix(h, record.player2Score);
+        h = mix(h, hash(record.getRecordedResult()));
+        // Final avalanche (MurmurHash3 fmix64)
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long mix(long h, long value) {
+        h ^= value * 0x9E3779B97F4A7C15L;
+        return Long.rotateLeft(h, 31) * 0xBF58476D1CE4E5B9L;
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars; null hashes differently from ""
+    private static long hash(String value) {
+        if (value == null) return 0x6A09E667F3BCC909L;
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,87 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command-line tool that copies a CSV history file into the database history store.
+ * Records are streamed from the mapped file and inserted in batches, so the CSV is
+ * never held in memory as a whole.
+ *
+ * Usage: java HistoryMigration [source.csv] [jdbc-url]
+ */
+public class HistoryMigration {
+    private static final int BATCH_SIZE = 1000;
+
+    public static void main(String[] args) {
+        Path source = Paths.get(args.length > 0 ? args[0] : "data/game_history.csv");
+        String url = args.length > 1 ? args[1]
+            : ConfigManager.getInstance().getString("history_jdbc_url", JdbcHistoryStore.DEFAULT_URL);
+
+        if (!Files.exists(source)) {
+            System.err.println("Source file not found: " + source);
+            System.exit(1);
+        }
+
+        JdbcHistoryStore store = null;
+        try {
+            store = new JdbcHistoryStore(url);
+            System.out.println("Migrating " + source + " into " + url);
+            long migrated = migrate(source, store);
+            System.out.println("Migrated " + migrated + " records");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Migration failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            if (store != null) {
+                store.close();
+            }
+        }
+    }
+
+    /**
+     * Replaces the store's contents with the records of a CSV history file
+     * @param source The CSV history file
+     * @param store The destination store
+     * @return Number of records migrated
+     */
+    public static long migrate(Path source, HistoryStore store) throws IOException {
+        store.rewrite(List.of());
+        List<GameHistoryManager.GameRecord> batch = new ArrayList<>(BATCH_SIZE);
+        long[] migrated = {0};
+        IOException[] failure = {null}; // The handler cannot throw IOException, so keep it aside
+        MappedHistoryLoader.LoadResult result = new MappedHistoryLoader().load(source, CsvHistoryStore.HEADER, record -> {
+            if (failure[0] != null) return;
+            batch.add(record);
+            if (batch.size() == BATCH_SIZE) {
+                failure[0] = flushBatch(store, batch, migrated);
+            }
+        });
+        if (!result.headerMatched) {
+            throw new IOException("Not a game history CSV file: " + source);
+        }
+        if (failure[0] == null && !batch.isEmpty()) {
+            failure[0] = flushBatch(store, batch, migrated);
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        System.out.println(String.format("Read %d records in %.1f ms (%.0f records/s), %d unreadable lines skipped",
+            result.records, result.getElapsedMillis(), result.getRecordsPerSecond(), result.errors));
+        return migrated[0];
+    }
+
+    // Returns the failure instead of throwing it, for use inside the loader callback
+    private static IOException flushBatch(HistoryStore store, List<GameHistoryManager.GameRecord> batch, long[] migrated) {
+        try {
+            store.append(batch);
+            migrated[0] += batch.size();
+            batch.clear();
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+}
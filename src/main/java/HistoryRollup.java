@@ -0,0 +1,294 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Per-day, per-mode, per-player totals of matches that were dropped from the detailed
+ * history by the retention policy. Everything dated before the cutoff lives only here,
+ * so leaderboards add these totals to the detailed rows and stay exact. The Elo ratings
+ * reached by the end of the rolled-up matches are kept too, as the starting point for
+ * replaying the detailed rows.
+ * Kept in memory and saved as a small CSV file next to the history:
+ * <pre>
+ * RolledUpBefore,2024-05-01
+ * Day,Mode,Player,Games,Wins,Losses,Draws,TotalScore,TotalOpponentScore
+ * 2024-04-30,PvC,Alice,12,7,3,2,30,21
+ * Mode,Player,Rating,RatedGames
+ * PvC,Alice,1523.75,12
+ * </pre>
+ * Not thread-safe; GameHistoryManager calls it under its lock.
+ */
+public class HistoryRollup {
+    public static final String CUTOFF_KEY = "RolledUpBefore";
+    public static final String HEADER = "Day,Mode,Player,Games,Wins,Losses,Draws,TotalScore,TotalOpponentScore";
+    public static final String RATINGS_HEADER = "Mode,Player,Rating,RatedGames";
+
+    private final Path file;
+    private LocalDate cutoff = null; // Null until something has been rolled up
+    // Day -> mode -> player -> totals
+    private final SortedMap<LocalDate, Map<String, Map<String, GameHistoryManager.PlayerStats>>> days = new TreeMap<>();
+    private RatingEngine ratings = RatingEngine.fromConfig();
+
+    public HistoryRollup(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public boolean isEmpty() {
+        return cutoff == null && days.isEmpty();
+    }
+
+    /**
+     * Gets the start of the first day that is still kept in detail
+     * @return Epoch millis; records dated before it belong in the summaries. Long.MIN_VALUE if nothing was rolled up.
+     */
+    public long getCutoffMillis() {
+        return cutoff == null ? Long.MIN_VALUE : cutoff.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Whether a record is older than the cutoff and so only belongs in the summaries
+     */
+    public boolean isRolledUp(GameHistoryManager.GameRecord record) {
+        return record.timestamp != GameHistoryManager.GameRecord.NO_TIMESTAMP && record.timestamp < getCutoffMillis();
+    }
+
+    /**
+     * Adds a record to its day's totals
+     */
+    public void add(GameHistoryManager.GameRecord record) {
+        LocalDate day = Instant.ofEpochMilli(record.timestamp).atZone(ZoneId.systemDefault()).toLocalDate();
+        Map<String, GameHistoryManager.PlayerStats> stats = days
+            .computeIfAbsent(day, _ -> new HashMap<>())
+            .computeIfAbsent(record.mode, _ -> new HashMap<>());
+        stats.computeIfAbsent(record.player1, _ -> new GameHistoryManager.PlayerStats())
+             .updateStats(record.player1Score, record.player2Score);
+        stats.computeIfAbsent(record.player2, _ -> new GameHistoryManager.PlayerStats())
+             .updateStats(record.player2Score, record.player1Score);
+    }
+
+    /**
+     * Moves the cutoff forward; records before it must have been added first
+     * @param newCutoff First day kept in detail
+     */
+    public void advanceCutoff(LocalDate newCutoff) {
+        if (cutoff == null || newCutoff.isAfter(cutoff)) {
+            cutoff = newCutoff;
+        }
+    }
+
+    /**
+     * Gets the ratings as of the end of the rolled-up matches; the caller may record late ones into it
+     */
+    public RatingEngine getRatings() {
+        return ratings;
+    }
+
+    /**
+     * Replaces the ratings, e.g. with ones that include newly rolled-up matches
+     */
+    public void setRatings(RatingEngine ratings) {
+        this.ratings = ratings;
+    }
+
+    /**
+     * Gets all-time totals per mode and player
+     */
+    public Map<String, Map<String, GameHistoryManager.PlayerStats>> totalsByMode() {
+        Map<String, Map<String, GameHistoryManager.PlayerStats>> totals = new HashMap<>();
+        for (Map<String, Map<String, GameHistoryManager.PlayerStats>> byMode : days.values()) {
+            for (Map.Entry<String, Map<String, GameHistoryManager.PlayerStats>> mode : byMode.entrySet()) {
+                Map<String, GameHistoryManager.PlayerStats> target = totals.computeIfAbsent(mode.getKey(), _ -> new HashMap<>());
+                for (Map.Entry<String, GameHistoryManager.PlayerStats> player : mode.getValue().entrySet()) {
+                    target.computeIfAbsent(player.getKey(), _ -> new GameHistoryManager.PlayerStats()).add(player.getValue());
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Adds a player's rolled-up days to stats bucketed by day or week. Hour buckets
+     * can't be served from daily totals and are left alone.
+     * @param buckets Stats by bucket start in epoch millis, as from HistoryColumns.statsByTime
+     * @param mode Game mode, or null for any
+     */
+    public void addStatsByTime(SortedMap<Long, GameHistoryManager.PlayerStats> buckets, String player, String mode,
+                               long fromMillis, long toMillis, HistoryColumns.TimeBucket bucket) {
+        if (bucket == HistoryColumns.TimeBucket.HOUR) return;
+        ZoneId zone = ZoneId.systemDefault();
+        for (Map.Entry<LocalDate, Map<String, Map<String, GameHistoryManager.PlayerStats>>> day : days.entrySet()) {
+            ZonedDateTime dayStart = day.getKey().atStartOfDay(zone);
+            long millis = dayStart.toInstant().toEpochMilli();
+            if (millis < fromMillis || millis >= toMillis) continue;
+            for (Map.Entry<String, Map<String, GameHistoryManager.PlayerStats>> byMode : day.getValue().entrySet()) {
+                if (mode != null && !mode.equals(byMode.getKey())) continue;
+                GameHistoryManager.PlayerStats stats = byMode.getValue().get(player);
+                if (stats == null) continue;
+                long start = HistoryColumns.bucketStart(dayStart, bucket).toInstant().toEpochMilli();
+                buckets.computeIfAbsent(start, _ -> new GameHistoryManager.PlayerStats()).add(stats);
+            }
+        }
+    }
+
+    public void clear() {
+        cutoff = null;
+        days.clear();
+        ratings = RatingEngine.fromConfig();
+    }
+
+    /**
+     * Reads the summaries file, if there is one
+     */
+    public void load() throws IOException {
+        clear();
+        if (!Files.exists(file)) return;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String first = reader.readLine();
+            String header = reader.readLine();
+            if (first == null || !first.startsWith(CUTOFF_KEY + ",") || !HEADER.equals(header)) {
+                throw new IOException("Not a history roll-up file: " + file);
+            }
+            String cutoffText = first.substring(CUTOFF_KEY.length() + 1).trim();
+            try {
+                cutoff = cutoffText.isEmpty() ? null : LocalDate.parse(cutoffText);
+            } catch (DateTimeParseException e) {
+                throw new IOException("Bad roll-up cutoff in " + file + ": " + first, e);
+            }
+            String line;
+            int lineNumber = 2;
+            boolean inRatings = false;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                if (line.equals(RATINGS_HEADER)) {
+                    inRatings = true;
+                    continue;
+                }
+                try {
+                    if (inRatings) {
+                        parseRating(line);
+                    } else {
+                        parseLine(line);
+                    }
+                } catch (RuntimeException e) {
+                    // A lost summary line would make the totals wrong, so don't carry on silently
+                    throw new IOException("Bad roll-up line " + lineNumber + " in " + file + ": " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the summaries file, replacing it atomically
+     */
+    public void save() throws IOException {
+        Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), "rollup_", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write(CUTOFF_KEY + "," + (cutoff == null ? "" : cutoff));
+                writer.write('\n');
+                writer.write(HEADER);
+                writer.write('\n');
+                for (Map.Entry<LocalDate, Map<String, Map<String, GameHistoryManager.PlayerStats>>> day : days.entrySet()) {
+                    for (Map.Entry<String, Map<String, GameHistoryManager.PlayerStats>> mode : day.getValue().entrySet()) {
+                        for (Map.Entry<String, GameHistoryManager.PlayerStats> player : mode.getValue().entrySet()) {
+                            GameHistoryManager.PlayerStats stats = player.getValue();
+                            writer.write(String.join(",",
+                                day.getKey().toString(),
+                                mode.getKey(),
+                                escape(player.getKey()),
+                                String.valueOf(stats.getGamesPlayed()),
+                                String.valueOf(stats.getWins()),
+                                String.valueOf(stats.getLosses()),
+                                String.valueOf(stats.getDraws()),
+                                String.valueOf(stats.getTotalScore()),
+                                String.valueOf(stats.getTotalOpponentScore())));
+                            writer.write('\n');
+                        }
+                    }
+                }
+                writer.write(RATINGS_HEADER);
+                writer.write('\n');
+                for (String mode : ratings.getModes()) {
+                    for (RankedSkipList.Entry entry : ratings.getRanking(mode, 1, ratings.getPlayerCount(mode))) {
+                        writer.write(String.join(",",
+                            mode,
+                            escape(entry.name),
+                            String.valueOf(entry.rating),
+                            String.valueOf(ratings.getRatedGames(mode, entry.name))));
+                        writer.write('\n');
+                    }
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void parseLine(String line) {
+        String[] head = line.split(",", 3);
+        String[] playerAndRest = splitPlayer(head[2]);
+        String player = playerAndRest[0];
+        String[] counts = playerAndRest[1].split(",");
+        if (counts.length != 6) {
+            throw new IllegalArgumentException("expected 9 fields");
+        }
+        GameHistoryManager.PlayerStats stats = new GameHistoryManager.PlayerStats(
+            Integer.parseInt(counts[0].trim()),
+            Integer.parseInt(counts[1].trim()),
+            Integer.parseInt(counts[2].trim()),
+            Integer.parseInt(counts[3].trim()),
+            Integer.parseInt(counts[4].trim()),
+            Integer.parseInt(counts[5].trim()));
+        days.computeIfAbsent(LocalDate.parse(head[0].trim()), _ -> new HashMap<>())
+            .computeIfAbsent(SymbolTable.getInstance().intern(head[1].trim()), _ -> new HashMap<>())
+            .computeIfAbsent(SymbolTable.getInstance().intern(player), _ -> new GameHistoryManager.PlayerStats())
+            .add(stats);
+    }
+
+    private void parseRating(String line) {
+        String[] head = line.split(",", 2);
+        String[] playerAndRest = splitPlayer(head[1]);
+        String[] fields = playerAndRest[1].split(",");
+        if (fields.length != 2) {
+            throw new IllegalArgumentException("expected 4 fields");
+        }
+        ratings.setRating(SymbolTable.getInstance().intern(head[0].trim()),
+            SymbolTable.getInstance().intern(playerAndRest[0]),
+            Double.parseDouble(fields[0].trim()),
+            Integer.parseInt(fields[1].trim()));
+    }
+
+    // Same quoting as the history CSV: names containing commas are wrapped in quotes.
+    // Returns the player name and the fields after it.
+    private static String[] splitPlayer(String text) {
+        if (text.startsWith("\"")) {
+            int close = text.indexOf('"', 1);
+            return new String[] { text.substring(1, close), text.substring(close + 2) };
+        }
+        int comma = text.indexOf(',');
+        return new String[] { text.substring(0, comma), text.substring(comma + 1) };
+    }
+
+    private static String escape(String value) {
+        return value.contains(",") ? "\"" + value + "\"" : value;
+    }
+}
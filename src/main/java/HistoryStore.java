@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Durable storage behind GameHistoryManager.
+ * The manager keeps the working copy of the history in memory; a store only has to
+ * stream it back at startup, persist appended batches, and replace its contents
+ * when the history is cleared, imported or compacted.
+ */
+public interface HistoryStore {
+    /** Returned by tail when another process replaced the stored history, which then has to be loaded again */
+    int REPLACED = -1;
+
+    /**
+     * Thrown by rewrite when another process replaced the stored history since this one
+     * last read it. Nothing is written; the history has to be loaded again first.
+     */
+    class ReplacedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public ReplacedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Work on a file kept next to the store
+     */
+    interface SharedFileAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * Streams every stored record to the handler, oldest first
+     */
+    void load(Consumer<GameHistoryManager.GameRecord> handler) throws IOException;
+
+    /**
+     * Durably appends a batch of records as one commit
+     */
+    void append(List<GameHistoryManager.GameRecord> records) throws IOException;
+
+    /**
+     * Replaces everything stored with the given records
+     * @throws ReplacedException If the store is shared and another process replaced it meanwhile
+     */
+    void rewrite(Iterable<GameHistoryManager.GameRecord> records) throws IOException;
+
+    /**
+     * Streams records that other processes appended since this one last loaded, appended
+     * or tailed, for stores that can be shared between processes
+     * @return The number of records passed to the handler, or REPLACED
+     */
+    default int tail(Consumer<GameHistoryManager.GameRecord> handler) throws IOException {
+        return 0;
+    }
+
+    /**
+     * Per-mode leaderboard computed by the store itself, for stores that can aggregate
+     * without a full scan
+     * @return Stats by mode and player, or null to have them computed from memory
+     */
+    default Map<String, Map<String, GameHistoryManager.PlayerStats>> queryLeaderboardByMode() throws IOException {
+        return null;
+    }
+
+    /**
+     * Runs an action while other processes sharing the store are kept out, for files kept
+     * next to it such as the roll-up. Stores that aren't shared between processes just run it.
+     */
+    default void runExclusive(SharedFileAction action) throws IOException {
+        action.run();
+    }
+
+    /**
+     * Describes where the history is kept, for display
+     */
+    String getLocation();
+
+    void close();
+}
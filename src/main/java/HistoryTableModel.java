@@ -0,0 +1,156 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Virtualized table model over the game history.
+ * Rows are fetched from GameHistoryManager a page at a time as the table asks for
+ * them, with only a few pages cached, so opening the history never copies it.
+ * Mode filtering and date ordering go through the history indexes, and the other
+ * columns sort over the snapshot's columns, instead of a RowSorter over
+ * materialized rows.
+ */
+public class HistoryTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMN_NAMES = {"Date/Time", "Mode", "Player 1", "Player 2", "Score", "Result", "Details"};
+    private static final int PAGE_SIZE = 128;
+    private static final int CACHED_PAGES = 16;
+
+    private final transient GameHistoryManager history;
+    private String modeFilter = null;     // null shows every mode
+    private int sortColumn = -1;          // -1 keeps history order
+    private boolean descending = false;
+
+    // Rows are read from this view, so paging needs no lock and sees no concurrent changes
+    private transient HistoryColumns.Snapshot snapshot;
+    // Record ids for the current filter/order; null means every record in history order
+    private int[] recordIds = null;
+    private int rowCount;
+
+    private final transient Map<Integer, GameHistoryManager.GameRecord[]> pageCache =
+        new LinkedHashMap<>(CACHED_PAGES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, GameHistoryManager.GameRecord[]> eldest) {
+                return size() > CACHED_PAGES;
+            }
+        };
+
+    public HistoryTableModel(GameHistoryManager history) {
+        this.history = history;
+        this.snapshot = history.getSnapshot();
+        this.rowCount = snapshot.size();
+    }
+
+    /**
+     * Shows only one mode
+     * @param mode "PvC", "PvP", or null / "All Modes" for everything
+     */
+    public void setModeFilter(String mode) {
+        modeFilter = mode == null || "All Modes".equals(mode) ? null : mode;
+        refresh();
+    }
+
+    /**
+     * Orders rows by a column, flipping direction when it is already the sort column.
+     * Dates start newest first, everything else A to Z.
+     * @param column Model column index
+     */
+    public void toggleSort(int column) {
+        if (column < 0 || column >= COLUMN_NAMES.length) {
+            return;
+        }
+        if (column == sortColumn) {
+            descending = !descending;
+        } else {
+            sortColumn = column;
+            descending = column == 0;
+        }
+        refresh();
+    }
+
+    /**
+     * Re-reads the row set from history, e.g. after records were added or cleared
+     */
+    public void refresh() {
+        pageCache.clear();
+        // Take the view and the ids together so the ids always refer to rows of the view
+        synchronized (history) {
+            snapshot = history.getSnapshot();
+            if (modeFilter == null && sortColumn != 0) {
+                recordIds = null;
+            } else {
+                recordIds = history.findRecordIds(null, modeFilter, Long.MIN_VALUE, Long.MAX_VALUE, sortColumn == 0);
+            }
+        }
+        // The view doesn't change, so sorting by the other columns needs no lock
+        if (sortColumn > 0) {
+            recordIds = switch (sortColumn) {
+                case 1 -> snapshot.sortRows(recordIds, HistoryColumns.SortKey.MODE);
+                case 2 -> snapshot.sortRows(recordIds, HistoryColumns.SortKey.PLAYER1);
+                case 3 -> snapshot.sortRows(recordIds, HistoryColumns.SortKey.PLAYER2);
+                case 4 -> snapshot.sortRows(recordIds, HistoryColumns.SortKey.SCORE);
+                case 5 -> snapshot.sortRows(recordIds, HistoryColumns.SortKey.RESULT);
+                default -> snapshot.sortRows(snapshot.sortRows(recordIds, HistoryColumns.SortKey.PLAYER2),
+                    HistoryColumns.SortKey.PLAYER1);
+            };
+        }
+        rowCount = recordIds == null ? snapshot.size() : recordIds.length;
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        GameHistoryManager.GameRecord record = getRecordAt(row);
+        return switch (column) {
+            case 0 -> record.getDate();
+            case 1 -> record.mode;
+            case 2 -> record.player1;
+            case 3 -> record.player2;
+            case 4 -> record.player1Score + " - " + record.player2Score;
+            case 5 -> record.getResult();
+            default -> String.format("%s vs %s", record.player1, record.player2);
+        };
+    }
+
+    private GameHistoryManager.GameRecord getRecordAt(int row) {
+        int page = row / PAGE_SIZE;
+        GameHistoryManager.GameRecord[] records = pageCache.get(page);
+        if (records == null) {
+            records = loadPage(page);
+            pageCache.put(page, records);
+        }
+        return records[row % PAGE_SIZE];
+    }
+
+    private GameHistoryManager.GameRecord[] loadPage(int page) {
+        int start = page * PAGE_SIZE;
+        int end = Math.min(start + PAGE_SIZE, rowCount);
+        GameHistoryManager.GameRecord[] records = new GameHistoryManager.GameRecord[end - start];
+        for (int row = start; row < end; row++) {
+            int position = descending ? rowCount - 1 - row : row;
+            int id = recordIds == null ? position : recordIds[position];
+            records[row - start] = snapshot.get(id);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Long-running history job, such as an export, run off the calling thread.
+ * Subclasses report progress as they go and poll for cancellation between batches;
+ * any thread may read the progress, rate and estimated time left, or cancel.
+ * @param <T> What the task produces
+ */
+public abstract class HistoryTask<T> {
+    public static final String RECORDS = "records";
+    public static final String BYTES = "bytes";
+
+    private final String name;
+    private final String unit;
+    private volatile long startNanos = 0; // 0 until run() is called
+    private volatile long processed = 0;
+    private volatile long total = -1; // -1 while unknown
+    private volatile boolean cancelled = false;
+
+    protected HistoryTask(String name) {
+        this(name, RECORDS);
+    }
+
+    /**
+     * @param unit What progress is counted in, RECORDS or BYTES
+     */
+    protected HistoryTask(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    /**
+     * Runs the task on the calling thread, timing it for getRate and getRemainingMillis
+     * @throws CancellationException If cancel() was called before the work completed
+     */
+    public final T run() throws IOException {
+        startNanos = System.nanoTime();
+        return execute();
+    }
+
+    /**
+     * Does the work; called through run()
+     * @throws CancellationException If cancel() was called before the work completed
+     */
+    protected abstract T execute() throws IOException;
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets what progress is counted in, RECORDS or BYTES
+     */
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Asks the task to stop at its next cancellation check
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Gets how many records (or bytes) have been processed so far
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * Gets how many records (or bytes) the task will process, or -1 if not known yet
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets how long the task has been running, or 0 if it hasn't started
+     */
+    public long getElapsedMillis() {
+        long start = startNanos;
+        return start == 0 ? 0 : (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Gets the average progress per second since the task started
+     */
+    public double getRate() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : processed * 1000.0 / elapsed;
+    }
+
+    /**
+     * Estimates the time left at the average rate so far
+     * @return Milliseconds, or -1 while the total or the rate is unknown
+     */
+    public long getRemainingMillis() {
+        long total = this.total;
+        double rate = getRate();
+        if (total < 0 || rate <= 0) {
+            return -1;
+        }
+        return (long) (Math.max(0, total - processed) * 1000 / rate);
+    }
+
+    protected void setTotal(long total) {
+        this.total = total;
+    }
+
+    protected void setProcessed(long processed) {
+        this.processed = processed;
+    }
+
+    protected void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException(name + " cancelled");
+        }
+    }
+}
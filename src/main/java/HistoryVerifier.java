@@ -0,0 +1,254 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Checks a CSV history file line by line and optionally salvages it.
+ * Chunks of the file are checked in parallel the same way ParallelHistoryImporter
+ * parses them: a line is intact if its checksum matches (in checksummed files) and it
+ * parses as a record. Repair writes every intact record, in order, to a new checksummed
+ * file, so damage only costs the damaged lines. A file whose header is unreadable is
+ * salvaged line by line, accepting lines with a valid checksum or without one.
+ */
+public class HistoryVerifier {
+    private static final int CHUNKS_PER_THREAD = 2;
+    private static final int MAX_REPORTED_DAMAGE = 100; // Damaged ranges listed in a report
+
+    /**
+     * A run of damaged lines
+     */
+    public static class Damage {
+        public final long offset;
+        public final long length;
+        public final String reason; // Why the first line of the run was rejected
+
+        Damage(long offset, long length, String reason) {
+            this.offset = offset;
+            this.length = length;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return "bytes " + offset + "-" + (offset + length) + ": " + reason;
+        }
+    }
+
+    /**
+     * Outcome of a scan
+     */
+    public static class Report {
+        public final boolean headerValid;
+        public final boolean checksummed;
+        public final long records;        // Intact records
+        public final long damagedLines;
+        public final List<Damage> damage; // The first damaged ranges, in file order
+        public final long bytes;
+        public final long elapsedNanos;
+
+        Report(boolean headerValid, boolean checksummed, long records, long damagedLines,
+               List<Damage> damage, long bytes, long elapsedNanos) {
+            this.headerValid = headerValid;
+            this.checksummed = checksummed;
+            this.records = records;
+            this.damagedLines = damagedLines;
+            this.damage = damage;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public boolean isClean() {
+            return headerValid && damagedLines == 0;
+        }
+
+        public double getElapsedMillis() {
+            return elapsedNanos / 1_000_000.0;
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes / (1024.0 * 1024.0) * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+
+    // Result of checking one chunk
+    private static class Chunk {
+        final long end; // File offset just past the chunk
+        long records = 0;
+        long damagedLines = 0;
+        final List<Damage> damage = new ArrayList<>();
+        final List<String> lines = new ArrayList<>(); // Intact records as checksummed lines, when repairing
+
+        Chunk(long end) {
+            this.end = end;
+        }
+    }
+
+    private final int parallelism;
+
+    public HistoryVerifier() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public HistoryVerifier(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Checks every line of a history file without changing it
+     * @param task Receives progress in bytes and is checked for cancellation; may be null
+     */
+    public Report verify(Path file, HistoryTask<?> task) throws IOException {
+        return scan(file, null, task);
+    }
+
+    /**
+     * Writes every intact record of a history file to a new checksummed file
+     * @param source The damaged file, which is only read
+     * @param target The file to create or replace, through a temporary file
+     * @param task Receives progress in bytes and is checked for cancellation; may be null
+     */
+    public Report repair(Path source, Path target, HistoryTask<?> task) throws IOException {
+        Path tempFile = Files.createTempFile(target.toAbsolutePath().getParent(), "repair_", ".tmp");
+        try {
+            Report report;
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write(CsvHistoryStore.CHECKSUM_HEADER);
+                writer.write('\n');
+                report = scan(source, writer, task);
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return report;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private Report scan(Path file, BufferedWriter repaired, HistoryTask<?> task) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return new Report(false, false, 0, 0, List.of(), 0, System.nanoTime() - start);
+            }
+            long[] header = ParallelHistoryImporter.readHeader(channel, size, CsvHistoryStore.HEADER);
+            int format = (int) header[1];
+            // Without a recognizable header every line is a candidate, the first one included
+            long bodyStart = format == MappedHistoryLoader.FORMAT_UNKNOWN ? 0 : header[0];
+            if (task != null) {
+                task.setTotal(size);
+            }
+
+            List<long[]> ranges = ParallelHistoryImporter.splitIntoChunks(channel, bodyStart, size);
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            long records = 0;
+            long damagedLines = 0;
+            List<Damage> damage = new ArrayList<>();
+            try {
+                Deque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<>();
+                int next = 0;
+                while (next < ranges.size() || !inFlight.isEmpty()) {
+                    while (next < ranges.size() && inFlight.size() < parallelism * CHUNKS_PER_THREAD) {
+                        long[] range = ranges.get(next++);
+                        inFlight.add(pool.submit(() -> checkChunk(channel, range[0], range[1], format, repaired != null)));
+                    }
+                    // Combine the oldest chunk while later ones are still being checked
+                    Chunk chunk = inFlight.poll().join();
+                    records += chunk.records;
+                    damagedLines += chunk.damagedLines;
+                    for (Damage range : chunk.damage) {
+                        addDamage(damage, range);
+                    }
+                    if (repaired != null) {
+                        for (String line : chunk.lines) {
+                            repaired.write(line);
+                            repaired.write('\n');
+                        }
+                    }
+                    if (task != null) {
+                        task.setProcessed(chunk.end);
+                        task.checkCancelled();
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (task != null && task.isCancelled()) throw e;
+                throw new IOException("Error checking history: " + e.getMessage(), e);
+            } finally {
+                pool.shutdownNow();
+            }
+            if (task != null) {
+                task.setProcessed(size);
+            }
+            return new Report(format != MappedHistoryLoader.FORMAT_UNKNOWN, format == MappedHistoryLoader.FORMAT_CHECKSUMMED,
+                records, damagedLines, damage, size, System.nanoTime() - start);
+        }
+    }
+
+    private static Chunk checkChunk(FileChannel channel, long start, long end, int format, boolean keepLines) {
+        Chunk chunk = new Chunk(end);
+        MappedHistoryLoader parser = new MappedHistoryLoader();
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map bytes " + start + "-" + end + ": " + e.getMessage(), e);
+        }
+
+        int limit = (int) (end - start);
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = MappedHistoryLoader.indexOfNewline(buffer, lineStart, limit);
+            if (lineEnd < 0) lineEnd = limit; // Unterminated final line
+            if (!MappedHistoryLoader.isBlank(buffer, lineStart, lineEnd)) {
+                int recordEnd = MappedHistoryLoader.trimCarriageReturn(buffer, lineStart, lineEnd);
+                try {
+                    GameHistoryManager.GameRecord record = parseLine(parser, buffer, lineStart, recordEnd, format);
+                    chunk.records++;
+                    if (keepLines) {
+                        chunk.lines.add(CsvHistoryStore.formatLine(record));
+                    }
+                } catch (RuntimeException e) {
+                    chunk.damagedLines++;
+                    addDamage(chunk.damage, new Damage(start + lineStart, Math.min(lineEnd + 1, limit) - lineStart, e.getMessage()));
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    private static GameHistoryManager.GameRecord parseLine(MappedHistoryLoader parser, ByteBuffer buffer,
+                                                           int start, int end, int format) {
+        if (format != MappedHistoryLoader.FORMAT_UNKNOWN) {
+            return parser.parseLine(buffer, start, end, format == MappedHistoryLoader.FORMAT_CHECKSUMMED);
+        }
+        // Salvaging: a line that carries a checksum must match it, others just have to parse
+        return parser.parseLine(buffer, start, end, MappedHistoryLoader.hasChecksum(buffer, start, end));
+    }
+
+    // Adjacent damaged lines are reported as one range
+    private static void addDamage(List<Damage> damage, Damage range) {
+        if (!damage.isEmpty()) {
+            Damage last = damage.get(damage.size() - 1);
+            if (last.offset + last.length == range.offset) {
+                damage.set(damage.size() - 1, new Damage(last.offset, last.length + range.length, last.reason));
+                return;
+            }
+        }
+        if (damage.size() < MAX_REPORTED_DAMAGE) {
+            damage.add(range);
+        }
+    }
+}
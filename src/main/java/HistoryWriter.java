@@ -0,0 +1,241 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue for match records.
+ * Callers hand records over and return immediately; a dedicated persistence thread
+ * drains the queue and commits whatever has accumulated as one batch. The queue is
+ * bounded, so a stalled disk eventually blocks producers instead of growing the heap.
+ * Store changes that must not cross queued appends, such as rewriting the whole store,
+ * are queued as ordered actions and run on the same thread between batches.
+ */
+public class HistoryWriter {
+    private static final Logger LOGGER = Logger.getLogger(HistoryWriter.class.getName());
+    private static final int MAX_BATCH = 256;          // Records committed together at most
+    private static final long POLL_MILLIS = 100;       // How often an idle writer checks for shutdown
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Destination of committed batches; one call is one group commit
+     */
+    public interface BatchSink {
+        void write(List<GameHistoryManager.GameRecord> batch) throws IOException;
+    }
+
+    /**
+     * Store change run on the persistence thread, after every record queued before it
+     * has been committed and before any record queued after it
+     */
+    public interface OrderedAction<T> {
+        T run() throws IOException;
+    }
+
+    // Queued ordered action and the future its outcome completes
+    private static final class Barrier<T> {
+        final OrderedAction<T> action;
+        final CompletableFuture<T> done = new CompletableFuture<>();
+
+        Barrier(OrderedAction<T> action) {
+            this.action = action;
+        }
+
+        void run() {
+            try {
+                done.complete(action.run());
+            } catch (IOException | RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        }
+    }
+
+    private final BlockingQueue<Object> queue; // Records and barriers, in submission order
+    private final BatchSink sink;
+    private final Thread writerThread;
+    private volatile boolean closed = false;
+
+    // Progress counters and metrics, guarded by this
+    private long submittedCount = 0;
+    private long committedCount = 0;
+    private long failedCount = 0;
+    private int maxQueueDepth = 0;
+    private long commitCount = 0;
+    private long lastCommitNanos = 0;
+    private long totalCommitNanos = 0;
+
+    public HistoryWriter(BatchSink sink, int capacity) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::run, "history-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues a record for persistence, blocking while the queue is full
+     * @param record The record to persist
+     */
+    public void submit(GameHistoryManager.GameRecord record) {
+        synchronized (this) {
+            submittedCount++;
+        }
+        if (closed) {
+            // Late records after shutdown started are written directly
+            commit(List.of(record));
+            return;
+        }
+        try {
+            queue.put(record);
+            int depth = queue.size();
+            synchronized (this) {
+                maxQueueDepth = Math.max(maxQueueDepth, depth);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warning("Interrupted while queueing a history record, writing it directly");
+            commit(List.of(record));
+        }
+    }
+
+    /**
+     * Queues a store change behind the records submitted so far, blocking while the queue is full
+     * @param action The change; it must not wait for anything that waits for this writer
+     * @return Completes with the action's result once it has run; see await
+     */
+    public <T> CompletableFuture<T> submitInOrder(OrderedAction<T> action) {
+        Barrier<T> barrier = new Barrier<>(action);
+        if (closed) {
+            barrier.run();
+            return barrier.done;
+        }
+        try {
+            queue.put(barrier);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warning("Interrupted while queueing a history store change, running it directly");
+            barrier.run();
+        }
+        return barrier.done;
+    }
+
+    /**
+     * Waits for an ordered action queued by submitInOrder
+     * @return The action's result
+     * @throws IOException The action's own IOException
+     */
+    public static <T> T await(CompletableFuture<T> done) throws IOException {
+        try {
+            return done.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw e;
+        }
+    }
+
+    /**
+     * Blocks until every record submitted so far has been committed
+     */
+    public synchronized void flush() {
+        long target = submittedCount;
+        while (committedCount < target && writerThread.isAlive()) {
+            try {
+                wait(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops accepting queued writes and commits everything still pending
+     */
+    public void close() {
+        closed = true;
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            // The writer did not finish in time, commit the remainder on this thread
+            List<Object> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            process(remaining);
+        }
+    }
+
+    public int getQueueDepth() { return queue.size(); }
+    public synchronized int getMaxQueueDepth() { return maxQueueDepth; }
+    public synchronized long getCommitCount() { return commitCount; }
+    public synchronized long getFailedCount() { return failedCount; }
+    public synchronized double getLastCommitMillis() { return lastCommitNanos / 1_000_000.0; }
+    public synchronized double getAverageCommitMillis() {
+        return commitCount == 0 ? 0 : totalCommitNanos / 1_000_000.0 / commitCount;
+    }
+
+    private void run() {
+        List<Object> drained = new ArrayList<>(MAX_BATCH);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Object first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                drained.add(first);
+                queue.drainTo(drained, MAX_BATCH - 1);
+                process(drained);
+                drained.clear();
+            } catch (InterruptedException e) {
+                // Only close() ends the writer; keep draining
+                Thread.interrupted();
+            }
+        }
+    }
+
+    // Commits the drained records, splitting the batch around ordered actions
+    private void process(List<Object> drained) {
+        List<GameHistoryManager.GameRecord> batch = new ArrayList<>(drained.size());
+        for (Object entry : drained) {
+            if (entry instanceof Barrier<?> barrier) {
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                    batch.clear();
+                }
+                barrier.run();
+            } else {
+                batch.add((GameHistoryManager.GameRecord) entry);
+            }
+        }
+        if (!batch.isEmpty()) {
+            commit(batch);
+        }
+    }
+
+    private void commit(List<GameHistoryManager.GameRecord> batch) {
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            sink.write(batch);
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            LOGGER.log(Level.SEVERE, "Failed to persist " + batch.size() + " history records", e);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        synchronized (this) {
+            lastCommitNanos = elapsed;
+            totalCommitNanos += elapsed;
+            commitCount++;
+            committedCount += batch.size();
+            if (failed) failedCount += batch.size();
+            notifyAll();
+        }
+    }
+}
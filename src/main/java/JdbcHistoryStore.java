@@ -0,0 +1,319 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * History store backed by an embedded database such as H2 or SQLite, reached through
+ * plain JDBC. Appends are prepared, batched inserts committed as one transaction, and
+ * leaderboards are computed by the database from a covering index instead of a scan
+ * in Java. The driver only has to be on the classpath; nothing here is vendor specific.
+ * The schema version is kept in a history_schema table, and older databases are
+ * migrated when they are opened.
+ */
+public class JdbcHistoryStore implements HistoryStore {
+    /** Embedded H2 database next to the CSV history */
+    public static final String DEFAULT_URL = "jdbc:h2:./data/game_history";
+    private static final int BATCH_SIZE = 1000; // Rows sent per executeBatch during rewrites
+
+    // Version 1 kept the date as text in played_at; version 2 keeps epoch millis
+    private static final int SCHEMA_VERSION = 2;
+    private static final String MIGRATION_TABLE = "game_history_migrating";
+
+    private static final String CREATE_SCHEMA_TABLE = "CREATE TABLE IF NOT EXISTS history_schema (version INT NOT NULL)";
+    private static final String COLUMNS =
+        "seq BIGINT PRIMARY KEY, "
+        + "played_at BIGINT, "           // Epoch millis, null when only the text below is known
+        + "played_at_text VARCHAR(64), " // Original date text that isn't a valid date
+        + "mode VARCHAR(16) NOT NULL, "
+        + "player1 VARCHAR(255) NOT NULL, "
+        + "player2 VARCHAR(255) NOT NULL, "
+        + "player1_score INT NOT NULL, "
+        + "player2_score INT NOT NULL, "
+        + "result VARCHAR(512) NOT NULL";
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS game_history (" + COLUMNS + ")";
+    // Cover both halves of the leaderboard query so it never touches the table rows
+    private static final String CREATE_PLAYER1_INDEX =
+        "CREATE INDEX IF NOT EXISTS idx_history_mode_player1 ON game_history (mode, player1, player1_score, player2_score)";
+    private static final String CREATE_PLAYER2_INDEX =
+        "CREATE INDEX IF NOT EXISTS idx_history_mode_player2 ON game_history (mode, player2, player2_score, player1_score)";
+    private static final String INSERT = insertInto("game_history");
+    private static final String SELECT_VERSION_1 =
+        "SELECT played_at, mode, player1, player2, player1_score, player2_score, result FROM game_history ORDER BY seq";
+    private static final String SELECT_ALL =
+        "SELECT played_at, played_at_text, mode, player1, player2, player1_score, player2_score, result FROM game_history ORDER BY seq";
+    private static final String LEADERBOARD_BY_MODE =
+        "SELECT mode, player, COUNT(*), "
+        + "SUM(CASE WHEN score > opponent_score THEN 1 ELSE 0 END), "
+        + "SUM(CASE WHEN score < opponent_score THEN 1 ELSE 0 END), "
+        + "SUM(CASE WHEN score = opponent_score THEN 1 ELSE 0 END), "
+        + "SUM(score), SUM(opponent_score) "
+        + "FROM (SELECT mode, player1 AS player, player1_score AS score, player2_score AS opponent_score FROM game_history "
+        + "UNION ALL SELECT mode, player2, player2_score, player1_score FROM game_history) sides "
+        + "GROUP BY mode, player";
+
+    private final String url;
+    private final Connection connection;
+    private long nextSeq;
+
+    /**
+     * Opens (and if needed creates) the history database
+     * @param url JDBC URL of the embedded database
+     * @throws IOException If the driver is missing or the database cannot be opened
+     */
+    public JdbcHistoryStore(String url) throws IOException {
+        this.url = url;
+        try {
+            connection = DriverManager.getConnection(url);
+            migrateSchema();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_TABLE);
+                statement.execute(CREATE_PLAYER1_INDEX);
+                statement.execute(CREATE_PLAYER2_INDEX);
+                try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(seq), 0) FROM game_history")) {
+                    rs.next();
+                    nextSeq = rs.getLong(1) + 1;
+                }
+            }
+            connection.setAutoCommit(false);
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IOException("Cannot open history database " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void load(Consumer<GameHistoryManager.GameRecord> handler) throws IOException {
+        long start = System.nanoTime();
+        int records = 0;
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(BATCH_SIZE);
+            try (ResultSet rs = statement.executeQuery(SELECT_ALL)) {
+                while (rs.next()) {
+                    long playedAt = rs.getLong(1);
+                    if (rs.wasNull()) {
+                        handler.accept(new GameHistoryManager.GameRecord(rs.getString(2), rs.getString(3),
+                            rs.getString(4), rs.getString(5), rs.getInt(6), rs.getInt(7), rs.getString(8)));
+                    } else {
+                        handler.accept(new GameHistoryManager.GameRecord(playedAt, rs.getString(3),
+                            rs.getString(4), rs.getString(5), rs.getInt(6), rs.getInt(7), rs.getString(8)));
+                    }
+                    records++;
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IOException("Error loading history from " + url + ": " + e.getMessage(), e);
+        }
+        double elapsedMillis = (System.nanoTime() - start) / 1_000_000.0;
+        System.out.println(String.format("Loaded %d history records from database in %.1f ms", records, elapsedMillis));
+    }
+
+    @Override
+    public synchronized void append(List<GameHistoryManager.GameRecord> records) throws IOException {
+        try {
+            insertAll(records);
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IOException("Error appending history to " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void rewrite(Iterable<GameHistoryManager.GameRecord> records) throws IOException {
+        long savedSeq = nextSeq;
+        try {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM game_history");
+            }
+            nextSeq = 1;
+            insertAll(records);
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            nextSeq = savedSeq;
+            throw new IOException("Error rewriting history in " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized Map<String, Map<String, GameHistoryManager.PlayerStats>> queryLeaderboardByMode() throws IOException {
+        Map<String, Map<String, GameHistoryManager.PlayerStats>> statsByMode = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(LEADERBOARD_BY_MODE)) {
+            while (rs.next()) {
+                statsByMode.computeIfAbsent(rs.getString(1), _ -> new HashMap<>())
+                    .put(rs.getString(2), new GameHistoryManager.PlayerStats(
+                        rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getInt(6), rs.getInt(7), rs.getInt(8)));
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IOException("Error querying leaderboard from " + url + ": " + e.getMessage(), e);
+        }
+        return statsByMode;
+    }
+
+    @Override
+    public String getLocation() {
+        return url;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing history database: " + e.getMessage());
+        }
+    }
+
+    private static String insertInto(String table) {
+        return "INSERT INTO " + table
+            + " (seq, played_at, played_at_text, mode, player1, player2, player1_score, player2_score, result) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    // Brings the database to SCHEMA_VERSION before anything else touches it
+    private void migrateSchema() throws SQLException {
+        int version;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_SCHEMA_TABLE);
+            version = readSchemaVersion(statement);
+        }
+        if (version == SCHEMA_VERSION) {
+            return;
+        }
+        if (version > SCHEMA_VERSION) {
+            throw new SQLException("history schema version " + version + " is newer than this version of the game");
+        }
+        if (version == 1) {
+            migrateTextDates();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM history_schema");
+            statement.executeUpdate("INSERT INTO history_schema (version) VALUES (" + SCHEMA_VERSION + ")");
+        }
+    }
+
+    // Databases made before history_schema existed are told apart by their columns; 0 means a new database
+    private int readSchemaVersion(Statement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("SELECT MAX(version) FROM history_schema")) {
+            rs.next();
+            int version = rs.getInt(1);
+            if (!rs.wasNull()) {
+                return version;
+            }
+        }
+        if (!canSelect("seq", "game_history") && canSelect("seq", MIGRATION_TABLE)) {
+            // A migration stopped after dropping the old table; the copy is complete
+            statement.execute("ALTER TABLE " + MIGRATION_TABLE + " RENAME TO game_history");
+            return SCHEMA_VERSION;
+        }
+        if (canSelect("played_at_text", "game_history")) return SCHEMA_VERSION;
+        if (canSelect("seq", "game_history")) return 1;
+        return 0;
+    }
+
+    private boolean canSelect(String column, String table) {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeQuery("SELECT " + column + " FROM " + table + " WHERE 1 = 0").close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Version 1 to 2: dates were text. The rows are copied in order into a new table, which then
+    // replaces the old one, using only statements every embedded database supports.
+    private void migrateTextDates() throws SQLException {
+        long start = System.nanoTime();
+        long migrated = 0;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + MIGRATION_TABLE);
+            statement.execute("CREATE TABLE " + MIGRATION_TABLE + " (" + COLUMNS + ")");
+        }
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(BATCH_SIZE);
+            nextSeq = 1;
+            List<GameHistoryManager.GameRecord> batch = new ArrayList<>(BATCH_SIZE);
+            try (ResultSet rs = statement.executeQuery(SELECT_VERSION_1)) {
+                while (rs.next()) {
+                    batch.add(new GameHistoryManager.GameRecord(rs.getString(1), rs.getString(2), rs.getString(3),
+                        rs.getString(4), rs.getInt(5), rs.getInt(6), rs.getString(7)));
+                    if (batch.size() == BATCH_SIZE) {
+                        insertAll(insertInto(MIGRATION_TABLE), batch);
+                        migrated += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+            insertAll(insertInto(MIGRATION_TABLE), batch);
+            migrated += batch.size();
+            connection.commit();
+            statement.execute("DROP TABLE game_history");
+            statement.execute("ALTER TABLE " + MIGRATION_TABLE + " RENAME TO game_history");
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        System.out.println(String.format("Migrated %d history records to schema version %d in %.1f ms",
+            migrated, SCHEMA_VERSION, (System.nanoTime() - start) / 1_000_000.0));
+    }
+
+    // Inserts through one prepared statement, flushing a batch every BATCH_SIZE rows
+    private void insertAll(Iterable<GameHistoryManager.GameRecord> records) throws SQLException {
+        insertAll(INSERT, records);
+    }
+
+    private void insertAll(String sql, Iterable<GameHistoryManager.GameRecord> records) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            int pending = 0;
+            for (GameHistoryManager.GameRecord record : records) {
+                insert.setLong(1, nextSeq++);
+                if (record.timestamp == GameHistoryManager.GameRecord.NO_TIMESTAMP) {
+                    insert.setNull(2, Types.BIGINT);
+                    insert.setString(3, record.getDate());
+                } else {
+                    insert.setLong(2, record.timestamp);
+                    insert.setNull(3, Types.VARCHAR);
+                }
+                insert.setString(4, record.mode);
+                insert.setString(5, record.player1);
+                insert.setString(6, record.player2);
+                insert.setInt(7, record.player1Score);
+                insert.setInt(8, record.player2Score);
+                insert.setString(9, record.getResult());
+                insert.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    insert.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                insert.executeBatch();
+            }
+        }
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            System.err.println("Error rolling back history transaction: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Set of primitive longs with open addressing and linear probing.
+ * One long[] slot per entry and no boxing, so tens of millions of entries take
+ * about 8 to 16 bytes each.
+ */
+public class LongHashSet {
+    private static final long EMPTY = 0L; // Marks a free slot; zero itself is tracked separately
+    private static final double LOAD_FACTOR = 0.75;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] table;
+    private int mask;
+    private int threshold;
+    private int size = 0;
+    private boolean containsZero = false;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize Entries the set should hold without growing
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize && capacity < 1 << 30) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Adds a value
+     * @return Whether the value was new
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsZero) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = slotOf(value);
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) return false;
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        if (++size > threshold) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) return containsZero;
+        int slot = slotOf(value);
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        if (table.length == 1 << 30) {
+            throw new IllegalStateException("LongHashSet is full at " + size + " entries");
+        }
+        long[] old = table;
+        allocate(old.length << 1);
+        for (long value : old) {
+            if (value != EMPTY) {
+                int slot = slotOf(value);
+                while (table[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    // Spreads the bits so sequential values don't cluster under linear probing
+    private int slotOf(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Streaming loader for the CSV history file.
+ * The file is memory-mapped in windows and records are parsed straight from the
+ * mapped bytes, so no line strings or line list are ever materialized and peak
+ * heap does not depend on the file size.
+ * Files whose header ends in CHECKSUM_COLUMN carry a CRC32C per line, which is
+ * verified as the line is parsed; a line that fails it counts as a bad line.
+ * A stream, such as a decompressed export, can be parsed the same way from a
+ * buffer that only holds the lines not parsed yet.
+ */
+public class MappedHistoryLoader {
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024; // Bytes mapped at a time
+    private static final int STREAM_BUFFER_SIZE = 1024 * 1024; // Bytes read from a stream at a time
+    private static final int FIELD_COUNT = 7;
+    private static final int MAX_FIELD_BYTES = 4096;
+    static final int CHECKSUM_DIGITS = 8;
+
+    /** Extra header column of files whose lines end in the CRC32C of the rest of the line, as 8 hex digits */
+    public static final String CHECKSUM_COLUMN = ",Checksum";
+
+    // What a header line says about the lines after it
+    static final int FORMAT_UNKNOWN = -1;     // Not a history header
+    static final int FORMAT_PLAIN = 0;        // Records only
+    static final int FORMAT_CHECKSUMMED = 1;  // Records followed by a checksum field
+
+    /**
+     * Receives each parsed record, in file order
+     */
+    public interface RecordHandler {
+        void onRecord(GameHistoryManager.GameRecord record);
+    }
+
+    /**
+     * Outcome of a load, for startup reporting
+     */
+    public static class LoadResult {
+        public final boolean headerMatched;
+        public final boolean checksummed;
+        public final int records;
+        public final int errors;
+        public final long bytes;
+        public final long elapsedNanos;
+
+        LoadResult(boolean headerMatched, boolean checksummed, int records, int errors, long bytes, long elapsedNanos) {
+            this.headerMatched = headerMatched;
+            this.checksummed = checksummed;
+            this.records = records;
+            this.errors = errors;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double getElapsedMillis() {
+            return elapsedNanos / 1_000_000.0;
+        }
+
+        public double getRecordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : records * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+
+    private final byte[] fieldBuffer = new byte[MAX_FIELD_BYTES];
+    private final String[] fields = new String[FIELD_COUNT];
+    private final CRC32C crc = new CRC32C();
+
+    /**
+     * Parses every record after the header line
+     * @param file The history file
+     * @param header Expected header line, with or without CHECKSUM_COLUMN; nothing is parsed if the file starts differently
+     * @param handler Receives each record
+     * @return Counts and timing of the load
+     */
+    public LoadResult load(Path file, String header, RecordHandler handler) throws IOException {
+        long start = System.nanoTime();
+        LineState state = new LineState();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return new LoadResult(true, true, 0, 0, 0, System.nanoTime() - start);
+            }
+
+            long position = 0; // File offset of the first unparsed line
+            while (position < size) {
+                long windowSize = Math.min(WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                boolean lastWindow = position + windowSize == size;
+
+                int lineStart = 0;
+                int limit = (int) windowSize;
+                while (lineStart < limit) {
+                    int lineEnd = indexOfNewline(window, lineStart, limit);
+                    if (lineEnd < 0) {
+                        if (!lastWindow) break; // Line continues in the next window
+                        lineEnd = limit;        // Unterminated final line
+                    }
+
+                    if (!handleLine(window, lineStart, lineEnd, header, state, handler)) {
+                        return new LoadResult(false, false, 0, 0, size, System.nanoTime() - start);
+                    }
+                    lineStart = lineEnd + 1;
+                }
+
+                if (lineStart == 0 && !lastWindow) {
+                    throw new IOException("History line " + state.lineNumber + " is longer than " + WINDOW_SIZE + " bytes");
+                }
+                position += Math.min(lineStart, limit);
+            }
+            return new LoadResult(true, state.checksummed, state.records, state.errors, size, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Parses every record after the header line of a history CSV read from a stream
+     * @param in The stream, read to its end but not closed
+     * @param header Expected header line, as for load(Path, ...)
+     * @param handler Receives each record
+     * @return Counts and timing of the load; bytes counts the bytes read from the stream
+     */
+    public LoadResult load(InputStream in, String header, RecordHandler handler) throws IOException {
+        long start = System.nanoTime();
+        LineState state = new LineState();
+        byte[] bytes = new byte[STREAM_BUFFER_SIZE];
+        int filled = 0; // Bytes in the buffer, all from lines not parsed yet
+        long total = 0;
+        boolean ended = false;
+        while (!ended) {
+            if (filled == bytes.length) {
+                if (bytes.length == WINDOW_SIZE) {
+                    throw new IOException("History line " + state.lineNumber + " is longer than " + WINDOW_SIZE + " bytes");
+                }
+                bytes = Arrays.copyOf(bytes, Math.min(WINDOW_SIZE, bytes.length * 2));
+            }
+            int read = in.read(bytes, filled, bytes.length - filled);
+            if (read < 0) {
+                ended = true;
+            } else {
+                filled += read;
+                total += read;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, filled);
+            int lineStart = 0;
+            while (lineStart < filled) {
+                int lineEnd = indexOfNewline(buffer, lineStart, filled);
+                if (lineEnd < 0) {
+                    if (!ended) break; // Line continues in the next read
+                    lineEnd = filled;  // Unterminated final line
+                }
+                if (!handleLine(buffer, lineStart, lineEnd, header, state, handler)) {
+                    return new LoadResult(false, false, 0, 0, total, System.nanoTime() - start);
+                }
+                lineStart = lineEnd + 1;
+            }
+            if (!ended && lineStart > 0) {
+                // Keep the unfinished line at the start of the buffer
+                System.arraycopy(bytes, lineStart, bytes, 0, filled - lineStart);
+                filled -= lineStart;
+            }
+        }
+        return new LoadResult(true, state.lineNumber == 0 || state.checksummed, state.records, state.errors,
+            total, System.nanoTime() - start);
+    }
+
+    // Where a load has got to, shared by the file and stream variants
+    private static class LineState {
+        int lineNumber = 0; // Line index, 0 being the header
+        boolean checksummed = false;
+        int records = 0;
+        int errors = 0;
+    }
+
+    // Handles one line of a load: the header, a blank line or a record
+    // Returns false if the line is a header that doesn't match
+    private boolean handleLine(ByteBuffer buffer, int lineStart, int lineEnd, String header,
+                               LineState state, RecordHandler handler) {
+        if (state.lineNumber == 0) {
+            int format = headerFormat(buffer, lineStart, trimCarriageReturn(buffer, lineStart, lineEnd), header);
+            if (format == FORMAT_UNKNOWN) {
+                return false;
+            }
+            state.checksummed = format == FORMAT_CHECKSUMMED;
+        } else if (!isBlank(buffer, lineStart, lineEnd)) {
+            GameHistoryManager.GameRecord record = null;
+            try {
+                record = parseLine(buffer, lineStart, trimCarriageReturn(buffer, lineStart, lineEnd), state.checksummed);
+            } catch (RuntimeException e) {
+                state.errors++;
+                System.err.println("Error parsing history line " + state.lineNumber + ": " + e.getMessage());
+            }
+            // Outside the try: a failing handler stops the load instead of counting as a bad line
+            if (record != null) {
+                handler.onRecord(record);
+                state.records++;
+            }
+        }
+        state.lineNumber++;
+        return true;
+    }
+
+    /**
+     * Parses one line, first checking its checksum if it has one
+     * @param checksummed Whether the line ends in a checksum field
+     * @throws IllegalArgumentException If the line is malformed or fails its checksum
+     */
+    GameHistoryManager.GameRecord parseLine(ByteBuffer buffer, int start, int end, boolean checksummed) {
+        return parseRecord(buffer, start, checksummed ? verifyChecksum(buffer, start, end) : end);
+    }
+
+    /**
+     * Checks the CRC32C at the end of a line against the bytes before it
+     * @return Where the record part of the line ends
+     * @throws IllegalArgumentException If the checksum is missing or doesn't match
+     */
+    int verifyChecksum(ByteBuffer buffer, int start, int end) {
+        if (!hasChecksum(buffer, start, end)) {
+            throw new IllegalArgumentException("Missing record checksum");
+        }
+        int comma = end - CHECKSUM_DIGITS - 1;
+        long expected = 0;
+        for (int i = comma + 1; i < end; i++) {
+            expected = expected << 4 | Character.digit(buffer.get(i), 16);
+        }
+        crc.reset();
+        crc.update(buffer.slice(start, comma - start));
+        if (crc.getValue() != expected) {
+            throw new IllegalArgumentException("Record checksum mismatch");
+        }
+        return comma;
+    }
+
+    // Whether a line ends in a checksum field: a comma and 8 hex digits
+    static boolean hasChecksum(ByteBuffer buffer, int start, int end) {
+        int comma = end - CHECKSUM_DIGITS - 1;
+        if (comma < start || buffer.get(comma) != ',') return false;
+        for (int i = comma + 1; i < end; i++) {
+            if (Character.digit(buffer.get(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    // Same quote handling as the CSV writer: quotes toggle whether commas separate fields.
+    // Also used by ParallelHistoryImporter, one loader per chunk since the field buffers are reused
+    GameHistoryManager.GameRecord parseRecord(ByteBuffer buffer, int start, int end) {
+        int fieldCount = 0;
+        int length = 0;
+        boolean inQuotes = false;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == ',' && !inQuotes) {
+                if (fieldCount < FIELD_COUNT) {
+                    fields[fieldCount] = new String(fieldBuffer, 0, length, StandardCharsets.UTF_8);
+                }
+                fieldCount++;
+                length = 0;
+            } else {
+                if (length == MAX_FIELD_BYTES) {
+                    throw new IllegalArgumentException("Field longer than " + MAX_FIELD_BYTES + " bytes");
+                }
+                fieldBuffer[length++] = b;
+            }
+        }
+        if (fieldCount < FIELD_COUNT) {
+            fields[fieldCount] = new String(fieldBuffer, 0, length, StandardCharsets.UTF_8);
+        }
+        fieldCount++;
+
+        if (fieldCount < FIELD_COUNT) {
+            throw new IllegalArgumentException("Invalid CSV line format: expected at least 7 fields, got " + fieldCount);
+        }
+        return new GameHistoryManager.GameRecord(
+            fields[0], // date (preserved from CSV)
+            fields[1], // mode
+            fields[2], // player1
+            fields[3], // player2
+            Integer.parseInt(fields[4].trim()), // player1Score
+            Integer.parseInt(fields[5].trim()), // player2Score
+            fields[6]  // result
+        );
+    }
+
+    static int indexOfNewline(ByteBuffer buffer, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    static int trimCarriageReturn(ByteBuffer buffer, int start, int end) {
+        return end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    static boolean isBlank(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b != ' ' && b != '\t' && b != '\r') return false;
+        }
+        return true;
+    }
+
+    /**
+     * Recognizes a header line
+     * @param header The record columns' header, without CHECKSUM_COLUMN
+     * @return FORMAT_PLAIN, FORMAT_CHECKSUMMED or FORMAT_UNKNOWN
+     */
+    static int headerFormat(ByteBuffer buffer, int start, int end, String header) {
+        if (matches(buffer, start, end, header)) return FORMAT_PLAIN;
+        if (matches(buffer, start, end, header + CHECKSUM_COLUMN)) return FORMAT_CHECKSUMMED;
+        return FORMAT_UNKNOWN;
+    }
+
+    static boolean matches(ByteBuffer buffer, int start, int end, String expected) {
+        byte[] bytes = expected.getBytes(StandardCharsets.UTF_8);
+        if (end - start != bytes.length) return false;
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(start + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+}
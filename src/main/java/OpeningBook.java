@@ -0,0 +1,177 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Population-wide opening book for the first rounds of a match.
+ * Counts which move players pick after every opening prefix shorter than DEPTH,
+ * across all recorded matches, in a fixed table of 39 counters.
+ * The table is loaded lazily on first use and each finished match is folded in
+ * incrementally, with persistence done on a background thread.
+ */
+public class OpeningBook {
+    private static final Logger LOGGER = Logger.getLogger(OpeningBook.class.getName());
+    private static final String DATA_DIR = "data";
+    private static final String BOOK_FILE = "opening_book.dat";
+    private static final int FILE_MAGIC = 0x52505342; // "RPSB"
+    private static final int FILE_VERSION = 1;
+    private static final String[] MOVES = {"Rock", "Paper", "Scissors"};
+
+    /** Number of opening moves covered by the book */
+    public static final int DEPTH = 3;
+    private static final int MIN_SUPPORT = 5;         // Openings needed at a prefix before it is trusted
+    private static final double MIN_SHARE = 0.4;      // The favourite must clearly beat the uniform 1/3
+
+    // counts[prefixOffset(length) + prefixCode * 3 + move]
+    private final long[] counts = new long[tableSize()];
+    private final Path bookPath;
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "opening-book-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean saveScheduled = new AtomicBoolean(false);
+
+    private OpeningBook() {
+        bookPath = Paths.get(DATA_DIR, BOOK_FILE);
+        load();
+    }
+
+    // Initialization-on-demand holder, so the book is only read once the AI first needs it
+    private static class Holder {
+        private static final OpeningBook INSTANCE = new OpeningBook();
+    }
+
+    public static OpeningBook getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Predicts the population's most likely next move after the given opening
+     * @param openingMoves Moves played so far in the match (fewer than DEPTH)
+     * @return Most likely next move, or null if the book has no clear answer
+     */
+    public synchronized String predictNextMove(List<String> openingMoves) {
+        int length = openingMoves.size();
+        if (length >= DEPTH) return null;
+
+        int prefixCode = encodePrefix(openingMoves, length);
+        if (prefixCode < 0) return null;
+
+        int base = prefixOffset(length) + prefixCode * 3;
+        long total = counts[base] + counts[base + 1] + counts[base + 2];
+        if (total < MIN_SUPPORT) return null;
+
+        int best = 0;
+        for (int m = 1; m < 3; m++) {
+            if (counts[base + m] > counts[base + best]) best = m;
+        }
+        return (double) counts[base + best] / total >= MIN_SHARE ? MOVES[best] : null;
+    }
+
+    /**
+     * Folds the opening of a finished match into the book
+     * @param matchMoves All moves the player made in the match
+     */
+    public void recordOpening(List<String> matchMoves) {
+        synchronized (this) {
+            int length = Math.min(DEPTH, matchMoves.size());
+            for (int i = 0; i < length; i++) {
+                int prefixCode = encodePrefix(matchMoves, i);
+                int move = encode(matchMoves.get(i));
+                if (prefixCode < 0 || move < 0) return;
+                counts[prefixOffset(i) + prefixCode * 3 + move]++;
+            }
+        }
+        scheduleSave();
+    }
+
+    // Coalesces bursts of updates into a single write
+    private void scheduleSave() {
+        if (saveScheduled.compareAndSet(false, true)) {
+            saveExecutor.execute(() -> {
+                saveScheduled.set(false);
+                save();
+            });
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(bookPath)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(bookPath)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION || in.readInt() != DEPTH) {
+                LOGGER.warning("Ignoring opening book with unexpected format: " + bookPath);
+                return;
+            }
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = in.readLong();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not load opening book, starting empty", e);
+            Arrays.fill(counts, 0);
+        }
+    }
+
+    private void save() {
+        long[] snapshot;
+        synchronized (this) {
+            snapshot = counts.clone();
+        }
+        try {
+            Files.createDirectories(bookPath.getParent());
+            Path tempFile = Files.createTempFile(bookPath.getParent(), "book_", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeInt(DEPTH);
+                for (long count : snapshot) {
+                    out.writeLong(count);
+                }
+            }
+            Files.move(tempFile, bookPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save opening book", e);
+        }
+    }
+
+    // Base-3 code of the first `length` moves, or -1 if any move is unknown
+    private static int encodePrefix(List<String> moves, int length) {
+        int code = 0;
+        for (int i = 0; i < length; i++) {
+            int move = encode(moves.get(i));
+            if (move < 0) return -1;
+            code = code * 3 + move;
+        }
+        return code;
+    }
+
+    // Start of the block for prefixes of the given length: 3 * (3^0 + ... + 3^(length-1))
+    private static int prefixOffset(int length) {
+        int offset = 0;
+        int prefixes = 1;
+        for (int i = 0; i < length; i++) {
+            offset += prefixes * 3;
+            prefixes *= 3;
+        }
+        return offset;
+    }
+
+    private static int tableSize() {
+        return prefixOffset(DEPTH);
+    }
+
+    private static int encode(String move) {
+        return switch (move) {
+            case "Rock" -> 0;
+            case "Paper" -> 1;
+            case "Scissors" -> 2;
+            default -> -1;
+        };
+    }
+}
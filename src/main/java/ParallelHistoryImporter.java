@@ -0,0 +1,222 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Multi-threaded importer for large CSV history files.
+ * The file is cut into chunks at line boundaries, chunks are mapped and parsed on a
+ * fork-join pool, and the parsed records are appended to the target in file order.
+ * Only a few chunks are in flight at once, so memory stays bounded for any file size.
+ */
+public class ParallelHistoryImporter {
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;   // Nominal bytes per chunk
+    private static final int MAX_HEADER_BYTES = 4096;
+    private static final int SCAN_BYTES = 64 * 1024;         // Read size when looking for a chunk boundary
+    private static final int CHUNKS_PER_THREAD = 2;          // Parsed chunks allowed to wait for the merge
+
+    /**
+     * Outcome of an import, for throughput reporting
+     */
+    public static class ImportResult {
+        public final boolean headerMatched;
+        public final int records;
+        public final int errors;
+        public final int chunks;
+        public final long bytes;
+        public final long elapsedNanos;
+
+        ImportResult(boolean headerMatched, int records, int errors, int chunks, long bytes, long elapsedNanos) {
+            this.headerMatched = headerMatched;
+            this.records = records;
+            this.errors = errors;
+            this.chunks = chunks;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double getElapsedMillis() {
+            return elapsedNanos / 1_000_000.0;
+        }
+
+        public double getRecordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : records * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes / (1024.0 * 1024.0) * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+
+    // Records parsed from one chunk, in file order
+    private static class Chunk {
+        final List<GameHistoryManager.GameRecord> records = new ArrayList<>();
+        int errors = 0;
+    }
+
+    private final int parallelism;
+
+    public ParallelHistoryImporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelHistoryImporter(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Parses a CSV history file and appends its records to the target
+     * @param file The CSV file
+     * @param header Expected header line; nothing is imported if the file starts differently
+     * @param target Receives the records, in file order
+     * @return Counts, throughput and timing of the import
+     */
+    public ImportResult importInto(Path file, String header, HistoryColumns target) throws IOException {
+        return importInto(file, header, target, null);
+    }
+
+    /**
+     * Parses a CSV history file and appends its records to the target, reporting to a task
+     * @param task Receives progress in bytes as chunks are merged and is checked for
+     *             cancellation between them; may be null
+     */
+    public ImportResult importInto(Path file, String header, HistoryColumns target, HistoryTask<?> task) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return new ImportResult(true, 0, 0, 0, 0, System.nanoTime() - start);
+            }
+            long[] headerLine = readHeader(channel, size, header);
+            if (headerLine[1] == MappedHistoryLoader.FORMAT_UNKNOWN) {
+                return new ImportResult(false, 0, 0, 0, size, System.nanoTime() - start);
+            }
+            long bodyStart = headerLine[0];
+            boolean checksummed = headerLine[1] == MappedHistoryLoader.FORMAT_CHECKSUMMED;
+
+            if (task != null) {
+                task.setTotal(size);
+            }
+
+            List<long[]> ranges = splitIntoChunks(channel, bodyStart, size);
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            int records = 0;
+            int errors = 0;
+            try {
+                Deque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<>();
+                int next = 0;
+                int merged = 0;
+                while (next < ranges.size() || !inFlight.isEmpty()) {
+                    while (next < ranges.size() && inFlight.size() < parallelism * CHUNKS_PER_THREAD) {
+                        long[] range = ranges.get(next++);
+                        inFlight.add(pool.submit(() -> parseChunk(channel, range[0], range[1], checksummed)));
+                    }
+                    // Merge the oldest chunk while later ones are still being parsed
+                    Chunk chunk = inFlight.poll().join();
+                    for (GameHistoryManager.GameRecord record : chunk.records) {
+                        target.append(record);
+                    }
+                    records += chunk.records.size();
+                    errors += chunk.errors;
+                    if (task != null) {
+                        task.setProcessed(ranges.get(merged++)[1]);
+                        task.checkCancelled();
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (task != null && task.isCancelled()) throw e;
+                throw new IOException("Error importing history: " + e.getMessage(), e);
+            } finally {
+                pool.shutdownNow();
+            }
+            return new ImportResult(true, records, errors, ranges.size(), size, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Reads a history file's header line
+     * @param header The record columns' header, without the checksum column
+     * @return The offset just past the header line, and the line's MappedHistoryLoader format
+     */
+    static long[] readHeader(FileChannel channel, long size, String header) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, MAX_HEADER_BYTES));
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // Keep reading until the buffer is full or the file ends
+        }
+        int limit = buffer.position();
+        int lineEnd = MappedHistoryLoader.indexOfNewline(buffer, 0, limit);
+        int end = lineEnd < 0 ? limit : lineEnd;
+        int format = MappedHistoryLoader.headerFormat(buffer, 0, MappedHistoryLoader.trimCarriageReturn(buffer, 0, end), header);
+        return new long[] {lineEnd < 0 ? limit : lineEnd + 1, format};
+    }
+
+    // Records never span lines (the writer doesn't emit newlines inside fields, quotes only
+    // protect commas), so each chunk is moved forward to start just after a newline
+    static List<long[]> splitIntoChunks(FileChannel channel, long bodyStart, long size) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_BYTES);
+        long chunkStart = bodyStart;
+        while (chunkStart < size) {
+            long chunkEnd = size;
+            long nominal = chunkStart + CHUNK_SIZE;
+            if (nominal < size) {
+                chunkEnd = nextLineStart(channel, scan, nominal, size);
+            }
+            ranges.add(new long[] {chunkStart, chunkEnd});
+            chunkStart = chunkEnd;
+        }
+        return ranges;
+    }
+
+    private static long nextLineStart(FileChannel channel, ByteBuffer scan, long from, long size) throws IOException {
+        long position = from;
+        while (position < size) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if (read <= 0) break;
+            int newline = MappedHistoryLoader.indexOfNewline(scan, 0, read);
+            if (newline >= 0) {
+                return position + newline + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static Chunk parseChunk(FileChannel channel, long start, long end, boolean checksummed) {
+        Chunk chunk = new Chunk();
+        MappedHistoryLoader parser = new MappedHistoryLoader();
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map bytes " + start + "-" + end + ": " + e.getMessage(), e);
+        }
+
+        int limit = (int) (end - start);
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = MappedHistoryLoader.indexOfNewline(buffer, lineStart, limit);
+            if (lineEnd < 0) lineEnd = limit; // Unterminated final line
+            if (!MappedHistoryLoader.isBlank(buffer, lineStart, lineEnd)) {
+                try {
+                    chunk.records.add(parser.parseLine(buffer, lineStart,
+                        MappedHistoryLoader.trimCarriageReturn(buffer, lineStart, lineEnd), checksummed));
+                } catch (RuntimeException e) {
+                    chunk.errors++;
+                    System.err.println("Error parsing history record at byte " + (start + lineStart) + ": " + e.getMessage());
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.Arrays;
+
+/**
+ * Incremental periodicity detector for a stream of moves.
+ * Keeps a running match counter for every period from 1 to maxPeriod,
+ * so each new move costs O(1) per period and history is never rescanned.
+ */
+public class PeriodDetector {
+    private static final String[] MOVES = {"Rock", "Paper", "Scissors"};
+    private static final double DECAY_FACTOR = 0.9; // Reduce influence of older matches
+
+    private final int maxPeriod;
+    private final byte[] recentMoves; // Ring buffer holding the last maxPeriod moves
+    private int movesSeen = 0;
+
+    // Per-period counters, index 0 is unused so that index == period
+    private final double[] matchScore;   // Decayed count of moves that repeated the move p steps back
+    private final double[] matchWeight;  // Decayed count of comparisons made for period p
+    private final int[] matchStreak;     // Consecutive matches for period p
+
+    // Strongest period after the last update
+    private int strongestPeriod = 0;
+    private double strongestConfidence = 0.0;
+
+    public PeriodDetector(int maxPeriod) {
+        if (maxPeriod < 1) {
+            throw new IllegalArgumentException("maxPeriod must be at least 1, got " + maxPeriod);
+        }
+        this.maxPeriod = maxPeriod;
+        this.recentMoves = new byte[maxPeriod];
+        this.matchScore = new double[maxPeriod + 1];
+        this.matchWeight = new double[maxPeriod + 1];
+        this.matchStreak = new int[maxPeriod + 1];
+    }
+
+    /**
+     * Records the next move and updates every period counter
+     * @param move The player's move ("Rock", "Paper", or "Scissors")
+     */
+    public void recordMove(String move) {
+        byte code = encode(move);
+        if (code < 0) return;
+
+        strongestPeriod = 0;
+        strongestConfidence = 0.0;
+
+        int limit = Math.min(maxPeriod, movesSeen);
+        for (int p = 1; p <= limit; p++) {
+            boolean match = moveAgo(p) == code;
+            matchScore[p] = matchScore[p] * DECAY_FACTOR + (match ? 1.0 : 0.0);
+            matchWeight[p] = matchWeight[p] * DECAY_FACTOR + 1.0;
+            matchStreak[p] = match ? matchStreak[p] + 1 : 0;
+
+            // A period only counts once a full cycle has repeated; ties go to the shorter period
+            if (matchStreak[p] >= p) {
+                double confidence = matchScore[p] / matchWeight[p];
+                if (confidence > strongestConfidence) {
+                    strongestConfidence = confidence;
+                    strongestPeriod = p;
+                }
+            }
+        }
+
+        recentMoves[movesSeen % maxPeriod] = code;
+        movesSeen++;
+    }
+
+    /**
+     * Gets the strongest period detected after the last move
+     * @return The period length, or 0 if no cycle is established
+     */
+    public int getStrongestPeriod() {
+        return strongestPeriod;
+    }
+
+    /**
+     * Gets the confidence of the strongest period
+     * @return Decayed match ratio between 0 and 1, or 0 if no cycle is established
+     */
+    public double getConfidence() {
+        return strongestConfidence;
+    }
+
+    /**
+     * Predicts the next move by continuing the strongest cycle
+     * @param minConfidence Minimum confidence required to make a prediction
+     * @return Next predicted move, or null if no cycle is strong enough
+     */
+    public String predictNextMove(double minConfidence) {
+        if (strongestPeriod == 0 || strongestConfidence < minConfidence) {
+            return null;
+        }
+        // The next move repeats the one a full period before it
+        return MOVES[moveAgo(strongestPeriod)];
+    }
+
+    public void reset() {
+        movesSeen = 0;
+        strongestPeriod = 0;
+        strongestConfidence = 0.0;
+        Arrays.fill(matchScore, 0.0);
+        Arrays.fill(matchWeight, 0.0);
+        Arrays.fill(matchStreak, 0);
+    }
+
+    // Move recorded `ago` steps before the next one (1 = latest recorded move, up to maxPeriod)
+    private byte moveAgo(int ago) {
+        int index = (movesSeen - ago) % maxPeriod;
+        return recentMoves[index < 0 ? index + maxPeriod : index];
+    }
+
+    private static byte encode(String move) {
+        return switch (move) {
+            case "Rock" -> 0;
+            case "Paper" -> 1;
+            case "Scissors" -> 2;
+            default -> -1;
+        };
+    }
+}
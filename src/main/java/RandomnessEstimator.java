@@ -0,0 +1,110 @@
+import java.util.Arrays;
+
+/**
+ * Streaming estimate of how predictable a player's moves are.
+ * Maintains unigram and bigram counts over a sliding window so each move
+ * costs O(1), and derives a block entropy estimate from them on demand.
+ */
+public class RandomnessEstimator {
+    private static final double MAX_ENTROPY = Math.log(3) / Math.log(2); // Bits per move for a uniform player
+
+    private final int windowSize;
+    private final int minSamples;
+    private final byte[] window; // Ring buffer of the moves currently counted
+    private int movesSeen = 0;
+
+    private final int[] moveCounts = new int[3];   // Moves in the window
+    private final int[] pairCounts = new int[9];   // Consecutive move pairs fully inside the window
+
+    public RandomnessEstimator(int windowSize, int minSamples) {
+        if (windowSize < 2 || minSamples < 2 || minSamples > windowSize) {
+            throw new IllegalArgumentException("Invalid window " + windowSize + " / min samples " + minSamples);
+        }
+        this.windowSize = windowSize;
+        this.minSamples = minSamples;
+        this.window = new byte[windowSize];
+    }
+
+    /**
+     * Records the next move, evicting the oldest one once the window is full
+     * @param move The player's move ("Rock", "Paper", or "Scissors")
+     */
+    public void recordMove(String move) {
+        byte code = encode(move);
+        if (code < 0) return;
+
+        if (movesSeen >= windowSize) {
+            // Evict the oldest move and the pair it starts
+            int oldest = movesSeen % windowSize;
+            int next = (movesSeen + 1) % windowSize;
+            moveCounts[window[oldest]]--;
+            pairCounts[window[oldest] * 3 + window[next]]--;
+        }
+        if (movesSeen > 0) {
+            pairCounts[window[(movesSeen - 1) % windowSize] * 3 + code]++;
+        }
+        moveCounts[code]++;
+        window[movesSeen % windowSize] = code;
+        movesSeen++;
+    }
+
+    /**
+     * Checks whether enough moves have been seen for a meaningful estimate
+     */
+    public boolean hasEstimate() {
+        return getSampleCount() >= minSamples;
+    }
+
+    /**
+     * Gets the number of moves the current estimate is based on
+     */
+    public int getSampleCount() {
+        return Math.min(movesSeen, windowSize);
+    }
+
+    /**
+     * Gets how predictable the player is, from the lower of the single-move
+     * entropy and the entropy of a move given the previous one
+     * @return 0 for a uniformly random player up to 1 for a fully predictable one
+     */
+    public double getPredictability() {
+        int samples = getSampleCount();
+        if (samples < 2) return 0.0;
+
+        double moveEntropy = entropy(moveCounts, samples);
+        double conditionalEntropy = entropy(pairCounts, samples - 1) - moveEntropy;
+        double bits = Math.max(0.0, Math.min(moveEntropy, conditionalEntropy));
+        return Math.max(0.0, 1.0 - bits / MAX_ENTROPY);
+    }
+
+    public void reset() {
+        movesSeen = 0;
+        Arrays.fill(moveCounts, 0);
+        Arrays.fill(pairCounts, 0);
+    }
+
+    // Miller-Madow corrected entropy in bits, offsetting the downward bias of small windows
+    private static double entropy(int[] counts, int total) {
+        if (total <= 0) return 0.0;
+        double h = 0.0;
+        int nonZero = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / total;
+                h -= p * Math.log(p);
+                nonZero++;
+            }
+        }
+        h += (nonZero - 1) / (2.0 * total);
+        return h / Math.log(2);
+    }
+
+    private static byte encode(String move) {
+        return switch (move) {
+            case "Rock" -> 0;
+            case "Paper" -> 1;
+            case "Scissors" -> 2;
+            default -> -1;
+        };
+    }
+}
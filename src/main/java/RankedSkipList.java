@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Players ordered by rating, highest first, with ties broken by name.
+ * An indexed skip list: every forward link also records how many entries it skips,
+ * so insert, remove, rank lookup and access by rank are all O(log n), and the top K
+ * entries are a walk along the bottom level.
+ */
+public class RankedSkipList {
+    private static final int MAX_LEVEL = 32;
+    private static final double LEVEL_PROBABILITY = 0.25;
+
+    /**
+     * A player's position in the ranking
+     */
+    public static class Entry {
+        public final String name;
+        public final double rating;
+        public final int rank;
+
+        Entry(String name, double rating, int rank) {
+            this.name = name;
+            this.rating = rating;
+            this.rank = rank;
+        }
+    }
+
+    private static class Node {
+        final String name;
+        final double rating;
+        final Node[] next;
+        final int[] span; // Entries passed when following next at the same level
+
+        Node(String name, double rating, int level) {
+            this.name = name;
+            this.rating = rating;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+
+    private final Node head = new Node(null, 0, MAX_LEVEL);
+    private int level = 1;
+    private int size = 0;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a player at a rating; the same name must not already be present
+     */
+    public void insert(String name, double rating) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rankAt = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rankAt[i] = i == level - 1 ? 0 : rankAt[i + 1];
+            while (x.next[i] != null && precedes(x.next[i], name, rating)) {
+                rankAt[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int newLevel = randomLevel();
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; i++) {
+                rankAt[i] = 0;
+                update[i] = head;
+                update[i].span[i] = size;
+            }
+            level = newLevel;
+        }
+
+        Node node = new Node(name, rating, newLevel);
+        for (int i = 0; i < newLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rankAt[0] - rankAt[i]);
+            update[i].span[i] = rankAt[0] - rankAt[i] + 1;
+        }
+        for (int i = newLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    /**
+     * Removes a player, given the rating it was inserted with
+     * @return Whether the player was found
+     */
+    public boolean remove(String name, double rating) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && precedes(x.next[i], name, rating)) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        x = x.next[0];
+        if (x == null || x.rating != rating || !x.name.equals(name)) {
+            return false;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].next[i] = x.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Gets a player's rank, given its current rating
+     * @return The 1-based rank, or -1 if the player is not present
+     */
+    public int rank(String name, double rating) {
+        int rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && (precedes(x.next[i], name, rating) || isAt(x.next[i], name, rating))) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x != head && isAt(x, name, rating)) {
+                return rank;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets consecutive entries of the ranking
+     * @param fromRank First 1-based rank to return
+     * @param count Most entries to return
+     */
+    public List<Entry> range(int fromRank, int count) {
+        List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(count, size - fromRank + 1)));
+        if (fromRank < 1 || fromRank > size) {
+            return entries;
+        }
+        // Descend by span to the first requested rank, then walk the bottom level
+        int traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= fromRank) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+        }
+        for (int rank = fromRank; x != null && entries.size() < count; rank++, x = x.next[0]) {
+            entries.add(new Entry(x.name, x.rating, rank));
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the highest rated players
+     */
+    public List<Entry> top(int count) {
+        return range(1, count);
+    }
+
+    public void clear() {
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+        level = 1;
+        size = 0;
+    }
+
+    // Higher ratings come first, equal ratings in name order
+    private static boolean precedes(Node node, String name, double rating) {
+        return node.rating > rating || (node.rating == rating && node.name.compareTo(name) < 0);
+    }
+
+    private static boolean isAt(Node node, String name, double rating) {
+        return node.rating == rating && node.name.equals(name);
+    }
+
+    private static int randomLevel() {
+        int newLevel = 1;
+        while (newLevel < MAX_LEVEL && ThreadLocalRandom.current().nextDouble() < LEVEL_PROBABILITY) {
+            newLevel++;
+        }
+        return newLevel;
+    }
+}
@@ -0,0 +1,294 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Elo ratings per game mode, kept current as matches are recorded.
+ * Each mode is its own ladder: a map from player to rating for O(1) updates, plus a
+ * RankedSkipList so the top of the ladder and any player's rank are O(log n).
+ * Not thread-safe; GameHistoryManager calls it under its lock.
+ */
+public class RatingEngine {
+    public static final double DEFAULT_K_FACTOR = 32;
+    public static final double DEFAULT_INITIAL_RATING = 1500;
+
+    private static class Rating {
+        double value;
+        int games;
+
+        Rating(double value) {
+            this.value = value;
+        }
+    }
+
+    // One mode's ratings and their ranking
+    private static class Ladder {
+        final Map<String, Rating> ratings = new HashMap<>();
+        final RankedSkipList ranking = new RankedSkipList();
+    }
+
+    private final double kFactor;
+    private final double initialRating;
+    private final Map<String, Ladder> ladders = new HashMap<>();
+
+    public RatingEngine(double kFactor, double initialRating) {
+        this.kFactor = kFactor;
+        this.initialRating = initialRating;
+    }
+
+    /**
+     * Creates an empty engine with the K-factor and initial rating from the configuration
+     */
+    public static RatingEngine fromConfig() {
+        ConfigManager config = ConfigManager.getInstance();
+        return new RatingEngine(config.getDouble("rating_k_factor", DEFAULT_K_FACTOR),
+            config.getDouble("rating_initial", DEFAULT_INITIAL_RATING));
+    }
+
+    public double getKFactor() {
+        return kFactor;
+    }
+
+    public double getInitialRating() {
+        return initialRating;
+    }
+
+    /**
+     * Updates both players' ratings for one match
+     * @param record The match, newer than every match recorded before it
+     */
+    public void record(GameHistoryManager.GameRecord record) {
+        if (record.player1.equals(record.player2)) {
+            return; // A player can't gain or lose rating against themselves
+        }
+        Ladder ladder = ladders.computeIfAbsent(record.mode, _ -> new Ladder());
+        Rating a = ladder.ratings.computeIfAbsent(record.player1, name -> join(ladder, name));
+        Rating b = ladder.ratings.computeIfAbsent(record.player2, name -> join(ladder, name));
+        double delta = ratingChange(a.value, b.value, record.player1Score, record.player2Score);
+        move(ladder, record.player1, a, a.value + delta);
+        move(ladder, record.player2, b, b.value - delta);
+    }
+
+    /**
+     * Gets a player's rating in a mode
+     * @return The rating, or the initial rating if the player has no rated matches
+     */
+    public double getRating(String mode, String player) {
+        Ladder ladder = ladders.get(mode);
+        Rating rating = ladder == null ? null : ladder.ratings.get(player);
+        return rating == null ? initialRating : rating.value;
+    }
+
+    /**
+     * Gets how many rated matches a player has played in a mode
+     */
+    public int getRatedGames(String mode, String player) {
+        Ladder ladder = ladders.get(mode);
+        Rating rating = ladder == null ? null : ladder.ratings.get(player);
+        return rating == null ? 0 : rating.games;
+    }
+
+    /**
+     * Gets a player's place on a mode's ladder
+     * @return The 1-based rank, or -1 if the player has no rated matches
+     */
+    public int getRank(String mode, String player) {
+        Ladder ladder = ladders.get(mode);
+        Rating rating = ladder == null ? null : ladder.ratings.get(player);
+        return rating == null ? -1 : ladder.ranking.rank(player, rating.value);
+    }
+
+    /**
+     * Gets part of a mode's ladder, highest rating first
+     * @param fromRank First 1-based rank to return
+     * @param count Most players to return
+     */
+    public List<RankedSkipList.Entry> getRanking(String mode, int fromRank, int count) {
+        Ladder ladder = ladders.get(mode);
+        return ladder == null ? new ArrayList<>() : ladder.ranking.range(fromRank, count);
+    }
+
+    public int getPlayerCount(String mode) {
+        Ladder ladder = ladders.get(mode);
+        return ladder == null ? 0 : ladder.ranking.size();
+    }
+
+    /**
+     * Gets the modes that have rated players
+     */
+    public Set<String> getModes() {
+        return ladders.keySet();
+    }
+
+    /**
+     * Sets a player's rating outright, e.g. when reading saved ratings back
+     */
+    public void setRating(String mode, String player, double value, int games) {
+        Ladder ladder = ladders.computeIfAbsent(mode, _ -> new Ladder());
+        Rating rating = ladder.ratings.get(player);
+        if (rating == null) {
+            rating = new Rating(value);
+            ladder.ratings.put(player, rating);
+        } else {
+            ladder.ranking.remove(player, rating.value);
+            rating.value = value;
+        }
+        rating.games = games;
+        ladder.ranking.insert(player, value);
+    }
+
+    /**
+     * Replays matches into a new engine that starts from a base engine's ratings, e.g. the
+     * detailed history on top of the ratings saved when older matches were rolled up.
+     * Elo depends on match order, but only between players who are connected through
+     * matches, so players are split into connected components per mode and each component
+     * is replayed on its own in parallel. The result equals a sequential replay.
+     * @param history The matches
+     * @param order Rows of history to replay, oldest first
+     * @param base Ratings to start from, and the parameters to use; left unchanged
+     */
+    public static RatingEngine recompute(HistoryColumns.Snapshot history, int[] order, RatingEngine base) {
+        RatingEngine engine = new RatingEngine(base.kFactor, base.initialRating);
+        for (Map.Entry<String, Ladder> ladder : base.ladders.entrySet()) {
+            for (Map.Entry<String, Rating> entry : ladder.getValue().ratings.entrySet()) {
+                engine.setRating(ladder.getKey(), entry.getKey(), entry.getValue().value, entry.getValue().games);
+            }
+        }
+        int rows = history.size();
+        int nameLimit = history.nameIdLimit();
+
+        // Union-find over players, one forest per mode
+        int[][] parent = new int[history.modeIdLimit()][];
+        for (int row : order) {
+            int p1 = history.player1Id(row);
+            int p2 = history.player2Id(row);
+            if (p1 == p2) continue;
+            int[] forest = parent[history.modeId(row)];
+            if (forest == null) {
+                forest = new int[nameLimit];
+                for (int i = 0; i < nameLimit; i++) forest[i] = i;
+                parent[history.modeId(row)] = forest;
+            }
+            int root1 = find(forest, p1);
+            int root2 = find(forest, p2);
+            if (root1 != root2) forest[root1] = root2;
+        }
+
+        // Number the components and bucket each rated row into its component, keeping the replay order
+        List<Map<Integer, Integer>> componentOfRoot = new ArrayList<>();
+        for (int m = 0; m < parent.length; m++) componentOfRoot.add(new HashMap<>());
+        int[] rowComponent = new int[rows];
+        List<Integer> componentMode = new ArrayList<>();
+        List<Integer> componentSize = new ArrayList<>();
+        for (int row : order) {
+            int p1 = history.player1Id(row);
+            if (p1 == history.player2Id(row)) {
+                rowComponent[row] = -1;
+                continue;
+            }
+            int m = history.modeId(row);
+            Integer component = componentOfRoot.get(m).get(find(parent[m], p1));
+            if (component == null) {
+                component = componentMode.size();
+                componentOfRoot.get(m).put(find(parent[m], p1), component);
+                componentMode.add(m);
+                componentSize.add(0);
+            }
+            rowComponent[row] = component;
+            componentSize.set(component, componentSize.get(component) + 1);
+        }
+        int components = componentMode.size();
+        int[] start = new int[components + 1];
+        for (int c = 0; c < components; c++) start[c + 1] = start[c] + componentSize.get(c);
+        int[] rowsByComponent = new int[start[components]];
+        int[] fill = start.clone();
+        for (int row : order) {
+            if (rowComponent[row] >= 0) rowsByComponent[fill[rowComponent[row]]++] = row;
+        }
+
+        // Components share no players, so each replays independently
+        List<Map<String, Rating>> results = IntStream.range(0, components).parallel()
+            .mapToObj(c -> replay(history, rowsByComponent, start[c], start[c + 1],
+                base.ladders.get(history.modeName(componentMode.get(c))), base.kFactor, base.initialRating))
+            .toList();
+
+        for (int c = 0; c < components; c++) {
+            String mode = history.modeName(componentMode.get(c));
+            for (Map.Entry<String, Rating> entry : results.get(c).entrySet()) {
+                engine.setRating(mode, entry.getKey(), entry.getValue().value, entry.getValue().games);
+            }
+        }
+        return engine;
+    }
+
+    private static Map<String, Rating> replay(HistoryColumns.Snapshot history, int[] rows, int from, int to,
+                                              Ladder base, double kFactor, double initialRating) {
+        Map<Integer, Rating> byId = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            int row = rows[i];
+            Rating a = byId.computeIfAbsent(history.player1Id(row), id -> startingRating(base, history.name(id), initialRating));
+            Rating b = byId.computeIfAbsent(history.player2Id(row), id -> startingRating(base, history.name(id), initialRating));
+            double delta = kFactor * (actualScore(history.player1Score(row), history.player2Score(row))
+                - expectedScore(a.value, b.value));
+            a.value += delta;
+            b.value -= delta;
+            a.games++;
+            b.games++;
+        }
+        Map<String, Rating> byName = new HashMap<>();
+        for (Map.Entry<Integer, Rating> entry : byId.entrySet()) {
+            byName.put(history.name(entry.getKey()), entry.getValue());
+        }
+        return byName;
+    }
+
+    // A copy of the player's base rating, so the base engine is left as it was
+    private static Rating startingRating(Ladder base, String player, double initialRating) {
+        Rating saved = base == null ? null : base.ratings.get(player);
+        if (saved == null) {
+            return new Rating(initialRating);
+        }
+        Rating rating = new Rating(saved.value);
+        rating.games = saved.games;
+        return rating;
+    }
+
+    private Rating join(Ladder ladder, String player) {
+        ladder.ranking.insert(player, initialRating);
+        return new Rating(initialRating);
+    }
+
+    private static void move(Ladder ladder, String player, Rating rating, double value) {
+        ladder.ranking.remove(player, rating.value);
+        rating.value = value;
+        rating.games++;
+        ladder.ranking.insert(player, value);
+    }
+
+    // Rating points player 1 gains (player 2 loses the same amount)
+    private double ratingChange(double rating1, double rating2, int score1, int score2) {
+        return kFactor * (actualScore(score1, score2) - expectedScore(rating1, rating2));
+    }
+
+    // Player 1's expected score against player 2
+    private static double expectedScore(double rating1, double rating2) {
+        return 1.0 / (1.0 + Math.pow(10.0, (rating2 - rating1) / 400.0));
+    }
+
+    private static double actualScore(int score1, int score2) {
+        if (score1 > score2) return 1.0;
+        if (score1 < score2) return 0.0;
+        return 0.5;
+    }
+
+    private static int find(int[] parent, int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]]; // Path halving
+            node = parent[node];
+        }
+        return node;
+    }
+}
@@ -3,20 +3,25 @@ import javax.swing.Timer;
 import javax.swing.table.*;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableCellRenderer;
-import javax.swing.RowFilter;
 import javax.swing.table.TableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.AffineTransform;
 import javax.sound.sampled.*;
 import java.io.*;
 import java.net.URL;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Rock Paper Scissors Game
@@ -273,6 +278,8 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
             int selectedIndex = modeSelector.getSelectedIndex();
 
             if (selectedIndex >= 0) { // A valid game mode is selected (0 for PvC, 1 for PvP)
+                boolean wasPvCMode = isPvCMode;
+                String previousPlayer = player1Name;
                 isPvCMode = (selectedIndex == 0); // 0 for PvC, 1 for PvP
 
                 if (aiDifficultyPanel != null) {
@@ -317,6 +324,10 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
                 String p2Name = isPvCMode ? "Computer" : (player2Name.trim().isEmpty() ? "Player 2" : player2Name);
                 animatedScoreboard.updatePlayerNames(p1Name, p2Name, isPvCMode);
                 
+                // One player's predictability says nothing about the next one's
+                if (isPvCMode != wasPvCMode || !player1Name.equals(previousPlayer)) {
+                    gameManager.forgetPlayer();
+                }
                 resetGame(); // Reset game for the new mode
             }
         });
@@ -839,10 +850,9 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
                     endTimer.start();
                 }
             } else {
-                // Record the player's move first
-                gameManager.recordPlayerMove(keyPressed);
-                // Get the computer's move using the AI
+                // Get the computer's move using the AI before it sees the player's move
                 String computerMove = gameManager.getComputerMove();
+                gameManager.recordPlayerMove(keyPressed);
                 // Update both emojis immediately when computer makes its choice
                 updateEmojis(keyPressed, computerMove);
                 String result = determineWinner(keyPressed, computerMove);
@@ -1204,6 +1214,33 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
         stats.append("Draws: ").append(pvpDraws).append("\n");
         stats.append("P1 Win Rate: ").append(String.format("%.1f%%", pvpWinRate)).append("\n");
         
+        stats.append("\nAI READ ON YOU:\n");
+        double predictability = gameManager.getPlayerPredictability();
+        if (predictability < 0) {
+            stats.append("Predictability: play more PvC rounds to measure\n");
+        } else {
+            stats.append("Predictability: ").append(String.format("%.0f%%", predictability * 100)).append("\n");
+        }
+        int period = gameManager.getDetectedPeriod();
+        if (period == 0) {
+            stats.append("Move cycle: none detected\n");
+        } else {
+            stats.append("Move cycle: repeats every ").append(period).append(period == 1 ? " move" : " moves")
+                 .append(String.format(" (%.0f%% sure)", gameManager.getDetectedPeriodConfidence() * 100)).append("\n");
+        }
+        ContextSketch.Prediction prediction = gameManager.getLastPrediction();
+        if (prediction != null) {
+            stats.append("Last read: expected ").append(prediction.move).append(" after your last ")
+                 .append(prediction.contextLength).append(prediction.contextLength == 1 ? " move" : " moves")
+                 .append(String.format(" (seen %d times, ±%.0f)", prediction.count, prediction.errorBound)).append("\n");
+        }
+        GameManager.AIDifficulty level = gameManager.getDifficulty();
+        stats.append("Out of thinking time (").append(level).append("): ")
+             .append(String.format("%.1f%% of moves", gameManager.getDeadlineHitRate(level) * 100)).append("\n");
+
+        appendRecentActivity(stats, player1Name.isEmpty() ? "Player" : player1Name);
+        appendWriterHealth(stats);
+        
         // Create and show simple message dialog
         JOptionPane.showMessageDialog(
             this,
@@ -1213,6 +1250,39 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
         );
     }
 
+    // Adds the player's games per day over the last week, from the history date index
+    private void appendRecentActivity(StringBuilder stats, String player) {
+        long weekAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(7);
+        Map<Long, GameHistoryManager.PlayerStats> days = GameHistoryManager.getInstance()
+            .getStatsByTime(player, null, weekAgo, Long.MAX_VALUE, HistoryColumns.TimeBucket.DAY);
+        stats.append("\nLAST 7 DAYS:\n");
+        if (days.isEmpty()) {
+            stats.append("No games recorded\n");
+            return;
+        }
+        DateTimeFormatter dayFormat = DateTimeFormatter.ofPattern("EEE dd MMM");
+        for (Map.Entry<Long, GameHistoryManager.PlayerStats> day : days.entrySet()) {
+            String label = Instant.ofEpochMilli(day.getKey()).atZone(ZoneId.systemDefault()).format(dayFormat);
+            stats.append(label).append(": ")
+                 .append(day.getValue().getGamesPlayed()).append(" games, ")
+                 .append(String.format("%.1f%%", day.getValue().getWinRate())).append(" won\n");
+        }
+    }
+
+    // Adds how the write-behind queue is keeping up with saving matches
+    private void appendWriterHealth(StringBuilder stats) {
+        HistoryWriter writer = GameHistoryManager.getInstance().getHistoryWriter();
+        stats.append("\nHISTORY SAVING:\n");
+        stats.append("Waiting to be saved: ").append(writer.getQueueDepth())
+             .append(" (most so far ").append(writer.getMaxQueueDepth()).append(")\n");
+        stats.append("Saves: ").append(writer.getCommitCount())
+             .append(String.format(", %.1f ms average, %.1f ms last", writer.getAverageCommitMillis(), writer.getLastCommitMillis()))
+             .append("\n");
+        if (writer.getFailedCount() > 0) {
+            stats.append("Matches that failed to save: ").append(writer.getFailedCount()).append("\n");
+        }
+    }
+
     // Move Game Controls button inside the settings and make settings more stylish
     private void showSettings() {
         JPanel settingsPanel = new JPanel();
@@ -1812,8 +1882,9 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
     }
 
     private void showGameHistory() {
-        // Get history from GameHistoryManager
-        List<GameHistoryManager.GameRecord> history = GameHistoryManager.getInstance().getGameHistory();
+        // Rows are paged lazily from GameHistoryManager, so nothing is copied up front
+        GameHistoryManager historyManager = GameHistoryManager.getInstance();
+        HistoryTableModel historyModel = new HistoryTableModel(historyManager);
         
         // Create a gradient panel for a more modern look
         JPanel historyPanel = new JPanel(new BorderLayout()) {
@@ -1896,7 +1967,7 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
         JPanel contentPanel = new JPanel(new BorderLayout());
         contentPanel.setOpaque(false);
         
-        if (history.isEmpty()) {
+        if (historyModel.getRowCount() == 0) {
             // Create a stylized no history panel
             JPanel noHistoryPanel = new JPanel(new BorderLayout());
             noHistoryPanel.setOpaque(false);
@@ -1924,23 +1995,8 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
             
             contentPanel.add(noHistoryPanel, BorderLayout.CENTER);
         } else {
-            // Create table with stylized renderer for colorful rows and icons
-            String[] columnNames = {"Date/Time", "Mode", "Player 1", "Player 2", "Score", "Result", "Details"};
-            Object[][] data = new Object[history.size()][7];
-            
-            for (int i = 0; i < history.size(); i++) {
-                GameHistoryManager.GameRecord record = history.get(i);
-                data[i][0] = record.date;
-                data[i][1] = record.mode;
-                data[i][2] = record.player1;
-                data[i][3] = record.player2;
-                data[i][4] = record.player1Score + " - " + record.player2Score;
-                data[i][5] = record.result;
-                data[i][6] = String.format("%s vs %s", record.player1, record.player2);
-            }
-            
             // Custom table with alternating row colors and cell styling
-            JTable historyTable = new JTable(data, columnNames) {
+            JTable historyTable = new JTable(historyModel) {
                 @Override
                 public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
                     Component comp = super.prepareRenderer(renderer, row, column);
@@ -2028,6 +2084,18 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
                 filterHistoryTable(historyTable, selectedMode);
             });
             
+            // Clicking a header sorts by that column; again reverses it
+            header.setToolTipText("Click a column header to sort by it");
+            header.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    int column = historyTable.columnAtPoint(e.getPoint());
+                    if (column >= 0) {
+                        historyModel.toggleSort(historyTable.convertColumnIndexToModel(column));
+                    }
+                }
+            });
+            
             contentPanel.add(scrollPane, BorderLayout.CENTER);
             
             // Add statistics summary panel
@@ -2035,10 +2103,10 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
             statsPanel.setOpaque(false);
             statsPanel.setBorder(BorderFactory.createEmptyBorder(10, 0, 0, 0));
             
-            // Calculate simple stats
-            int totalGames = history.size();
-            long pvcGames = history.stream().filter(r -> "PvC".equals(r.mode)).count();
-            long pvpGames = history.stream().filter(r -> "PvP".equals(r.mode)).count();
+            // Simple stats straight from the history indexes
+            int totalGames = historyModel.getRowCount();
+            int pvcGames = historyManager.getRecordCount("PvC");
+            int pvpGames = historyManager.getRecordCount("PvP");
             
             JLabel totalLabel = new JLabel(String.format("Total Games: %d", totalGames));
             totalLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
@@ -2101,37 +2169,126 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
             }
         });
         
-        JButton exportButton = createStyledButton("📊 Export CSV", 
+        // Export, import and maintenance run on the history task thread with a progress window,
+        // so large files don't freeze the window
+        JButton exportButton = createStyledButton("📊 Export", 
             new Color(52, 152, 219), Color.WHITE);
         exportButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
-        exportButton.setPreferredSize(new Dimension(150, 40));
+        exportButton.setPreferredSize(new Dimension(140, 40));
         exportButton.addActionListener(_ -> {
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setDialogTitle("Export Game History");
-            fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
-                "CSV Files", "csv"));
+            javax.swing.filechooser.FileNameExtensionFilter csvFilter =
+                new javax.swing.filechooser.FileNameExtensionFilter("CSV Files", "csv");
+            fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                "JSON Lines Files", "jsonl"));
+            fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                "Compressed CSV Files", "gz"));
+            fileChooser.setFileFilter(csvFilter);
+
+            // Which records to include, beside the file list; left alone it exports everything
+            JTextField playerField = new JTextField(10);
+            JComboBox<String> modeChoice = new JComboBox<>(new String[] {"All Modes", "PvC", "PvP"});
+            JComboBox<String> periodChoice = new JComboBox<>(new String[] {"All time", "Last 7 days", "Last 30 days", "Last 365 days"});
+            int[] periodDays = {0, 7, 30, 365};
+            JPanel includePanel = new JPanel(new GridLayout(0, 1, 0, 4));
+            includePanel.setBorder(BorderFactory.createTitledBorder("Include"));
+            includePanel.add(new JLabel("Player (blank for all):"));
+            includePanel.add(playerField);
+            includePanel.add(new JLabel("Mode:"));
+            includePanel.add(modeChoice);
+            includePanel.add(new JLabel("Period:"));
+            includePanel.add(periodChoice);
+            fileChooser.setAccessory(includePanel);
             
             if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-                try {
-                    String targetPath = fileChooser.getSelectedFile().getPath();
-                    if (!targetPath.toLowerCase().endsWith(".csv")) {
-                        targetPath += ".csv";
-                    }
-                    GameHistoryManager.getInstance().exportHistory(targetPath);
-                    JOptionPane.showMessageDialog(this,
-                        "Game history exported successfully to:\n" + targetPath,
-                        "Export Successful",
-                        JOptionPane.INFORMATION_MESSAGE);
-                } catch (IOException e) {
-                    JOptionPane.showMessageDialog(this,
-                        "Error exporting history: " + e.getMessage(),
-                        "Export Failed",
-                        JOptionPane.ERROR_MESSAGE);
+                String player = playerField.getText().trim();
+                int days = periodDays[periodChoice.getSelectedIndex()];
+                HistoryExporter.Filter exportFilter = new HistoryExporter.Filter(
+                    player.isEmpty() ? null : player,
+                    modeChoice.getSelectedIndex() == 0 ? null : (String) modeChoice.getSelectedItem(),
+                    days == 0 ? Long.MIN_VALUE : System.currentTimeMillis() - days * 86_400_000L,
+                    Long.MAX_VALUE);
+                String targetPath = fileChooser.getSelectedFile().getPath();
+                String lowerPath = targetPath.toLowerCase();
+                if (!lowerPath.endsWith(".csv") && !lowerPath.endsWith(".jsonl") && !lowerPath.endsWith(".ndjson")
+                        && !lowerPath.endsWith(".gz") && !lowerPath.endsWith(GameHistoryManager.BINARY_EXTENSION)) {
+                    // Use the extension of the chosen file type; a bare .gz means compressed CSV
+                    String extension = fileChooser.getFileFilter() instanceof javax.swing.filechooser.FileNameExtensionFilter filter
+                        ? filter.getExtensions()[0] : "csv";
+                    targetPath += "gz".equals(extension) ? ".csv.gz" : "." + extension;
                 }
+                String exportPath = targetPath;
+                runHistoryTask(exportButton, historyManager.createExport(exportPath, exportFilter),
+                    null, "Export",
+                    count -> String.format("Exported %,d records to:%n%s", count, exportPath));
+            }
+        });
+        
+        JButton importButton = createStyledButton("📥 Import", 
+            new Color(46, 204, 113), Color.WHITE);
+        importButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        importButton.setPreferredSize(new Dimension(140, 40));
+        importButton.addActionListener(_ -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Import Game History");
+            fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                "Game History Files", "csv", GameHistoryManager.BINARY_EXTENSION.substring(1)));
+            if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            String sourcePath = fileChooser.getSelectedFile().getPath();
+            Object[] options = {"Merge", "Replace", "Cancel"};
+            int choice = JOptionPane.showOptionDialog(this,
+                "Merge adds the file's games that aren't in the history yet.\n"
+                    + "Replace swaps the whole history for the file; the current history is backed up first.",
+                "Import Game History",
+                JOptionPane.YES_NO_CANCEL_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                null, options, options[0]);
+            if (choice == 0) {
+                // Merged batches are appended as they complete, so the table grows while the merge runs
+                HistoryMerger merger = historyManager.createMerge(sourcePath);
+                runHistoryTask(importButton, merger, historyModel, "Merge",
+                    added -> String.format("Added %,d new records, skipped %,d already in the history"
+                        + " and %,d older than the retention period.",
+                        added, merger.getDuplicates(), merger.getRolledUp()));
+            } else if (choice == 1) {
+                runHistoryTask(importButton, historyManager.createImport(sourcePath), historyModel, "Import",
+                    count -> String.format("Imported %,d records. The previous history was backed up.", count));
             }
         });
         
+        JButton maintenanceButton = createStyledButton("🛠️ Maintenance", 
+            new Color(155, 89, 182), Color.WHITE);
+        maintenanceButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        maintenanceButton.setPreferredSize(new Dimension(150, 40));
+        JPopupMenu maintenanceMenu = new JPopupMenu();
+        JMenuItem verifyItem = new JMenuItem("Verify history file");
+        verifyItem.addActionListener(_ -> startVerify(maintenanceButton, historyModel, false));
+        JMenuItem repairItem = new JMenuItem("Repair history file...");
+        repairItem.addActionListener(_ -> {
+            int result = JOptionPane.showConfirmDialog(this,
+                "Rewrite the history file with only its intact records?\nThe current file is kept as a backup.",
+                "Confirm Repair",
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE);
+            if (result == JOptionPane.YES_OPTION) {
+                startVerify(maintenanceButton, historyModel, true);
+            }
+        });
+        JMenuItem compactItem = new JMenuItem("Compact history file");
+        compactItem.addActionListener(_ -> runHistoryTask(maintenanceButton, historyManager.createCompactTask(),
+            null, "Compaction", count -> String.format("Rewrote the history file with %,d records.", count)));
+        maintenanceMenu.add(verifyItem);
+        maintenanceMenu.add(repairItem);
+        maintenanceMenu.addSeparator();
+        maintenanceMenu.add(compactItem);
+        maintenanceButton.addActionListener(_ -> maintenanceMenu.show(maintenanceButton, 0, maintenanceButton.getHeight()));
+        
         buttonPanel.add(exportButton);
+        buttonPanel.add(importButton);
+        buttonPanel.add(maintenanceButton);
         buttonPanel.add(clearButton);
         footerPanel.add(buttonPanel, BorderLayout.EAST);
         
@@ -2146,19 +2303,79 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
         historyDialog.setVisible(true);
     }
     
+    /**
+     * Runs a history task in the background with a progress window, then reports the outcome
+     * @param source Component whose window owns the progress window and messages
+     * @param model Table to refresh as the history changes and when the task is done; may be null
+     * @param action What the task does, for messages, e.g. "Export"
+     * @param successMessage Builds the message shown when the task completes
+     */
+    private <T> void runHistoryTask(Component source, HistoryTask<T> task, HistoryTableModel model,
+                                    String action, Function<T, String> successMessage) {
+        Window owner = SwingUtilities.getWindowAncestor(source);
+        Runnable onProgress = null;
+        if (model != null) {
+            // Only refresh when records were added, so the table isn't reset on every tick
+            GameHistoryManager historyManager = GameHistoryManager.getInstance();
+            int[] shownCount = {historyManager.getRecordCount()};
+            onProgress = () -> {
+                int count = historyManager.getRecordCount();
+                if (count != shownCount[0]) {
+                    shownCount[0] = count;
+                    model.refresh();
+                }
+            };
+        }
+        TaskProgressDialog.start(owner, task, onProgress).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (model != null) {
+                model.refresh();
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause == null) {
+                JOptionPane.showMessageDialog(owner, successMessage.apply(result),
+                    action + " Complete", JOptionPane.INFORMATION_MESSAGE);
+            } else if (cause instanceof CancellationException) {
+                JOptionPane.showMessageDialog(owner, action + " was cancelled.",
+                    action + " Cancelled", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(owner, "Error during " + action.toLowerCase() + ": " + cause.getMessage(),
+                    action + " Failed", JOptionPane.ERROR_MESSAGE);
+            }
+        }));
+    }
+
+    // Checks the history file's checksums, or rewrites it without the damaged lines
+    private void startVerify(Component source, HistoryTableModel model, boolean repair) {
+        HistoryTask<HistoryVerifier.Report> task;
+        try {
+            task = GameHistoryManager.getInstance().createVerifyTask(repair);
+        } catch (IllegalStateException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Verify History", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        runHistoryTask(source, task, repair ? model : null, repair ? "Repair" : "Verification", report -> {
+            String summary = String.format("%,d intact records, %,d damaged lines (%.0f MB/s).",
+                report.records, report.damagedLines, report.getMegabytesPerSecond());
+            if (repair) {
+                return summary + "\nThe history file was rewritten without the damaged lines; the original file was backed up.";
+            }
+            if (report.isClean()) {
+                return summary + "\nThe history file is intact.";
+            }
+            StringBuilder message = new StringBuilder(summary);
+            for (HistoryVerifier.Damage damage : report.damage.subList(0, Math.min(5, report.damage.size()))) {
+                message.append("\n").append(damage);
+            }
+            return message.append("\nUse Maintenance > Repair to keep only the intact records.").toString();
+        });
+    }
+
     /**
      * Filter the history table to show only records of the specified mode
      */
     private void filterHistoryTable(JTable table, String mode) {
-        TableRowSorter<TableModel> sorter = new TableRowSorter<>(table.getModel());
-        table.setRowSorter(sorter);
-        
-        if ("All Modes".equals(mode)) {
-            sorter.setRowFilter(null); // Show all rows
-        } else {
-            // Filter by mode column (index 1)
-            sorter.setRowFilter(RowFilter.regexFilter("^" + mode + "$", 1));
-        }
+        // Filtering goes through the history's mode index rather than a RowFilter over every row
+        ((HistoryTableModel) table.getModel()).setModeFilter(mode);
     }
 
     private void showLeaderboard() {
@@ -2316,14 +2533,30 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
         
         panel.add(summaryPanel, BorderLayout.NORTH);
         
-        // Convert to list and sort by win rate
-        List<Map.Entry<String, GameHistoryManager.PlayerStats>> sortedPlayers = 
-            new ArrayList<>(leaderboard.entrySet());
-        sortedPlayers.sort((a, b) -> Double.compare(b.getValue().getWinRate(), a.getValue().getWinRate()));
+        // Order by the rating ladder; players without rated games follow by win rate
+        GameHistoryManager historyManager = GameHistoryManager.getInstance();
+        List<RankedSkipList.Entry> ranked = historyManager.getTopRated(mode, leaderboard.size());
+        Map<String, Double> ratings = new HashMap<>();
+        List<Map.Entry<String, GameHistoryManager.PlayerStats>> sortedPlayers = new ArrayList<>();
+        for (RankedSkipList.Entry entry : ranked) {
+            GameHistoryManager.PlayerStats stats = leaderboard.get(entry.name);
+            if (stats != null) {
+                sortedPlayers.add(Map.entry(entry.name, stats));
+                ratings.put(entry.name, entry.rating);
+            }
+        }
+        List<Map.Entry<String, GameHistoryManager.PlayerStats>> unrated = new ArrayList<>();
+        for (Map.Entry<String, GameHistoryManager.PlayerStats> entry : leaderboard.entrySet()) {
+            if (!ratings.containsKey(entry.getKey())) {
+                unrated.add(entry);
+            }
+        }
+        unrated.sort((a, b) -> Double.compare(b.getValue().getWinRate(), a.getValue().getWinRate()));
+        sortedPlayers.addAll(unrated);
 
         // Create table model
-        String[] columnNames = {"Rank", "Player", "Games", "Wins", "Losses", "Draws", "Win Rate", "Avg Score"};
-        Object[][] data = new Object[sortedPlayers.size()][8];
+        String[] columnNames = {"Rank", "Player", "Games", "Wins", "Losses", "Draws", "Win Rate", "Avg Score", "Rating"};
+        Object[][] data = new Object[sortedPlayers.size()][9];
         
         for (int i = 0; i < sortedPlayers.size(); i++) {
             Map.Entry<String, GameHistoryManager.PlayerStats> entry = sortedPlayers.get(i);
@@ -2336,6 +2569,8 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
             data[i][5] = stats.getDraws();
             data[i][6] = String.format("%.1f%%", stats.getWinRate());
             data[i][7] = String.format("%.1f", stats.getAverageScore());
+            Double rating = ratings.get(entry.getKey());
+            data[i][8] = rating == null ? "-" : String.format("%.0f", rating);
         }
 
         // Create a custom table with alternating row colors and better formatting
@@ -2412,6 +2647,7 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
         leaderboardTable.getColumnModel().getColumn(5).setPreferredWidth(70);  // Draws
         leaderboardTable.getColumnModel().getColumn(6).setPreferredWidth(80);  // Win Rate
         leaderboardTable.getColumnModel().getColumn(7).setPreferredWidth(80);  // Avg Score
+        leaderboardTable.getColumnModel().getColumn(8).setPreferredWidth(70);  // Rating
         
         // Center-align all columns
         DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
@@ -2434,7 +2670,7 @@ public class RockPaperScissorsGame extends JFrame implements ActionListener {
         footerPanel.setBorder(BorderFactory.createEmptyBorder(10, 0, 0, 0));
         
         // Add sorting info
-        JLabel sortInfoLabel = new JLabel("Sorted by win rate");
+        JLabel sortInfoLabel = new JLabel("Sorted by Elo rating");
         sortInfoLabel.setFont(new Font("Segoe UI", Font.ITALIC, 12));
         sortInfoLabel.setForeground(ThemeManager.DARK_TEXT_SECONDARY);
         footerPanel.add(sortInfoLabel);
@@ -0,0 +1,73 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide interner for the strings that repeat across match records: player names
+ * and game modes. Each distinct string gets one canonical instance, so millions of
+ * records share a handful of String objects instead of holding their own copies.
+ * Canonical instances are only held weakly, so a name no record refers to any more,
+ * e.g. after the history was cleared or rolled up, is dropped by the garbage collector
+ * and its entry removed on a later call. Lookups of known names take no lock.
+ */
+public class SymbolTable {
+    private static final SymbolTable INSTANCE = new SymbolTable();
+
+    // Weak link to a canonical instance; the map key is a separate copy, so the entry doesn't keep it alive
+    private static class Symbol extends WeakReference<String> {
+        final String key;
+
+        Symbol(String canonical, String key, ReferenceQueue<String> queue) {
+            super(canonical, queue);
+            this.key = key;
+        }
+    }
+
+    private final Map<String, Symbol> symbols = new ConcurrentHashMap<>();
+    private final ReferenceQueue<String> collected = new ReferenceQueue<>();
+
+    private SymbolTable() {
+    }
+
+    public static SymbolTable getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the canonical instance of a string, adding it if it is new
+     * @param value The string, or null
+     * @return An equal string shared by every caller, or null for null
+     */
+    public String intern(String value) {
+        if (value == null) return null;
+        Symbol symbol = symbols.get(value);
+        String canonical = symbol == null ? null : symbol.get();
+        if (canonical != null) {
+            return canonical;
+        }
+        removeCollected();
+        Symbol added = new Symbol(value, new String(value), collected);
+        while (true) {
+            Symbol existing = symbols.putIfAbsent(added.key, added);
+            if (existing == null) {
+                return value;
+            }
+            canonical = existing.get();
+            if (canonical != null) {
+                return canonical; // Added by another thread meanwhile
+            }
+            if (symbols.replace(added.key, existing, added)) {
+                return value;
+            }
+        }
+    }
+
+    // Drops the entries of names that were garbage collected
+    private void removeCollected() {
+        Symbol symbol;
+        while ((symbol = (Symbol) collected.poll()) != null) {
+            symbols.remove(symbol.key, symbol);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Small non-modal window that follows a HistoryTask running on the history task thread.
+ * It polls the task a few times a second for records processed, throughput and time
+ * left, and offers a Cancel button. It closes itself when the task completes.
+ */
+public class TaskProgressDialog extends JDialog {
+    private static final long serialVersionUID = 1L;
+    private static final int REFRESH_MILLIS = 250;
+    private static final int BAR_MAXIMUM = 1000;
+
+    private final transient HistoryTask<?> task;
+    private final transient Runnable onProgress;
+    private final JProgressBar progressBar;
+    private final JLabel statusLabel;
+    private final JButton cancelButton;
+    private final javax.swing.Timer refreshTimer;
+
+    private TaskProgressDialog(Window owner, HistoryTask<?> task, Runnable onProgress) {
+        super(owner, task.getName(), ModalityType.MODELESS);
+        this.task = task;
+        this.onProgress = onProgress;
+
+        JPanel panel = new JPanel(new BorderLayout(0, 12));
+        panel.setBackground(ThemeManager.DARK_BG_SECONDARY);
+        panel.setBorder(BorderFactory.createEmptyBorder(20, 25, 20, 25));
+
+        JLabel titleLabel = new JLabel(task.getName());
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
+        titleLabel.setForeground(ThemeManager.DARK_TEXT_PRIMARY);
+        panel.add(titleLabel, BorderLayout.NORTH);
+
+        progressBar = new JProgressBar(0, BAR_MAXIMUM);
+        progressBar.setPreferredSize(new Dimension(380, 22));
+        progressBar.setStringPainted(true);
+        progressBar.setForeground(ThemeManager.DARK_ACCENT_PRIMARY);
+
+        statusLabel = new JLabel("Waiting for other history tasks...");
+        statusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        statusLabel.setForeground(ThemeManager.DARK_TEXT_SECONDARY);
+
+        JPanel centerPanel = new JPanel(new BorderLayout(0, 8));
+        centerPanel.setOpaque(false);
+        centerPanel.add(progressBar, BorderLayout.NORTH);
+        centerPanel.add(statusLabel, BorderLayout.SOUTH);
+        panel.add(centerPanel, BorderLayout.CENTER);
+
+        cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(_ -> cancel());
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttonPanel.setOpaque(false);
+        buttonPanel.add(cancelButton);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        setContentPane(panel);
+        // Closing the window asks the task to stop; the window goes away once it has
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                cancel();
+            }
+        });
+        pack();
+        setLocationRelativeTo(owner);
+
+        refreshTimer = new javax.swing.Timer(REFRESH_MILLIS, _ -> refresh());
+    }
+
+    /**
+     * Submits a task to the history task thread and shows its progress until it completes
+     * @param owner Window to center on
+     * @param onProgress Run on the event thread at every refresh, e.g. to show records merged so far; may be null
+     * @return The task's future; its callbacks run off the event thread
+     */
+    public static <T> CompletableFuture<T> start(Window owner, HistoryTask<T> task, Runnable onProgress) {
+        TaskProgressDialog dialog = new TaskProgressDialog(owner, task, onProgress);
+        CompletableFuture<T> future = GameHistoryManager.getInstance().submitTask(task);
+        dialog.refreshTimer.start();
+        dialog.setVisible(true);
+        future.whenComplete((_, _) -> SwingUtilities.invokeLater(dialog::finish));
+        return future;
+    }
+
+    private void cancel() {
+        task.cancel();
+        cancelButton.setEnabled(false);
+        cancelButton.setText("Cancelling...");
+    }
+
+    private void finish() {
+        refreshTimer.stop();
+        refresh();
+        dispose();
+    }
+
+    private void refresh() {
+        long processed = task.getProcessed();
+        long total = task.getTotal();
+        if (total > 0) {
+            progressBar.setIndeterminate(false);
+            progressBar.setValue((int) Math.min(BAR_MAXIMUM, processed * BAR_MAXIMUM / total));
+        } else {
+            progressBar.setIndeterminate(true);
+        }
+
+        if (task.getElapsedMillis() > 0) {
+            StringBuilder status = new StringBuilder(formatAmount(processed));
+            if (total >= 0) {
+                status.append(" / ").append(formatAmount(total));
+            }
+            status.append(' ').append(unitLabel());
+            status.append("  •  ").append(formatAmount((long) task.getRate())).append(' ').append(unitLabel()).append("/s");
+            long remaining = task.getRemainingMillis();
+            status.append("  •  ").append(remaining < 0 ? "estimating time left" : formatDuration(remaining) + " left");
+            statusLabel.setText(status.toString());
+        }
+
+        if (onProgress != null) {
+            onProgress.run();
+        }
+    }
+
+    private String unitLabel() {
+        return HistoryTask.BYTES.equals(task.getUnit()) ? "MB" : "records";
+    }
+
+    private String formatAmount(long amount) {
+        if (HistoryTask.BYTES.equals(task.getUnit())) {
+            return String.format("%.1f", amount / (1024.0 * 1024.0));
+        }
+        return String.format("%,d", amount);
+    }
+
+    private static String formatDuration(long millis) {
+        long seconds = (millis + 999) / 1000;
+        if (seconds >= 3600) {
+            return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+        }
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+}
@@ -0,0 +1,427 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * History store built from a snapshot plus a write-ahead log.
+ * Every mutation is one checksummed log entry appended to the current log segment,
+ * so committing a batch of matches costs a single small write. On startup the
+ * snapshot is read and the log segments written after it are replayed, stopping at
+ * the first torn or corrupt entry. When a segment grows large it is closed and
+ * folded into a new snapshot on a background thread.
+ *
+ * Files, all in one directory:
+ * history.snapshot      - "RPSW", version, generation, then the binary columnar history
+ * history-NNNNNNNN.wal  - log segment of generation N; the snapshot covers every segment up to its generation
+ */
+public class WalHistoryStore implements HistoryStore {
+    private static final int SNAPSHOT_MAGIC = 0x52505357; // "RPSW"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_FILE = "history.snapshot";
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final long COMPACT_THRESHOLD_BYTES = 4L * 1024 * 1024; // Segment size that triggers compaction
+    private static final int ENTRY_HEADER_BYTES = 9;                       // Length, checksum and type
+    private static final int MAX_ENTRY_BYTES = 64 * 1024 * 1024;
+
+    // Log entry types
+    private static final byte ENTRY_ADD = 1;
+    private static final byte ENTRY_CLEAR = 2;
+
+    // Snapshot contents together with the newest segment they include
+    private static class Snapshot {
+        final long generation;
+        final HistoryColumns columns;
+
+        Snapshot(long generation, HistoryColumns columns) {
+            this.generation = generation;
+            this.columns = columns;
+        }
+    }
+
+    private final Path directory;
+    private final boolean fsyncOnAppend;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "history-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by this
+    private long snapshotGeneration = 0; // Newest segment folded into the snapshot, 0 for none
+    private long generation = 1;         // Segment currently appended to
+    private FileChannel segment;
+    private boolean compacting = false;
+
+    public WalHistoryStore(Path directory, boolean fsyncOnAppend) {
+        this.directory = directory;
+        this.fsyncOnAppend = fsyncOnAppend;
+    }
+
+    /**
+     * Checks whether a store has been written in the directory yet
+     */
+    public boolean exists() throws IOException {
+        return Files.exists(directory.resolve(SNAPSHOT_FILE)) || !listSegments().isEmpty();
+    }
+
+    /**
+     * Starts the store from a CSV history file. The records are written as a snapshot to a
+     * temporary file that is then moved into place, so an interrupted seed leaves no store
+     * behind and the next start seeds again.
+     * @return Number of records seeded
+     */
+    public synchronized long seed(Path csvFile) throws IOException {
+        HistoryColumns columns = new HistoryColumns();
+        MappedHistoryLoader.LoadResult result = new MappedHistoryLoader().load(csvFile, CsvHistoryStore.HEADER, columns::append);
+        if (!result.headerMatched) {
+            throw new IOException("Not a game history CSV file: " + csvFile);
+        }
+        Files.createDirectories(directory);
+        Files.move(writeSnapshot(columns, 0), directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE);
+        return columns.size();
+    }
+
+    /**
+     * Recovers the history from the snapshot and the log segments after it. A snapshot or
+     * segment that can't be read is moved aside and the rest is recovered, so the store
+     * stays usable and new matches are still logged.
+     */
+    @Override
+    public synchronized void load(Consumer<GameHistoryManager.GameRecord> handler) throws IOException {
+        long start = System.nanoTime();
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        Snapshot snapshot;
+        try {
+            snapshot = readSnapshot(snapshotFile);
+        } catch (IOException e) {
+            System.err.println("Error reading history snapshot, moved it to " + moveAside(snapshotFile) + ": " + e.getMessage());
+            snapshot = new Snapshot(0, new HistoryColumns());
+        }
+        snapshotGeneration = snapshot.generation;
+        HistoryColumns columns = snapshot.columns;
+        List<Long> segments = listSegments();
+        int replayed = 0;
+        for (long gen : segments) {
+            Path file = segmentPath(gen);
+            if (gen <= snapshotGeneration) {
+                Files.deleteIfExists(file); // Left behind by a compaction that was interrupted after the snapshot
+                continue;
+            }
+            long validBytes;
+            try {
+                validBytes = replay(file, columns);
+            } catch (IOException e) {
+                System.err.println("Error replaying history log, moved it to " + moveAside(file) + ": " + e.getMessage());
+                continue;
+            }
+            replayed++;
+            if (validBytes < Files.size(file)) {
+                System.err.println("Discarding torn tail of " + file + " after " + validBytes + " bytes");
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes);
+                    channel.force(true);
+                }
+            }
+        }
+        generation = segments.isEmpty() ? snapshotGeneration + 1 : Math.max(snapshotGeneration + 1, segments.get(segments.size() - 1));
+        openSegment();
+
+        for (int row = 0; row < columns.size(); row++) {
+            handler.accept(columns.get(row));
+        }
+        System.out.println(String.format("Recovered %d history records from snapshot and %d log segments in %.1f ms",
+            columns.size(), replayed, (System.nanoTime() - start) / 1_000_000.0));
+    }
+
+    @Override
+    public void append(List<GameHistoryManager.GameRecord> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(records.size());
+        for (GameHistoryManager.GameRecord record : records) {
+            writeRecord(out, record);
+        }
+        boolean compact;
+        synchronized (this) {
+            writeEntry(ENTRY_ADD, bytes.toByteArray());
+            compact = !compacting && segment.size() >= COMPACT_THRESHOLD_BYTES;
+            if (compact) {
+                compacting = true;
+                long folded = rotate();
+                compactor.execute(() -> compact(folded));
+            }
+        }
+    }
+
+    /**
+     * Clearing is logged as a single entry; any other replacement (an import) is written
+     * as a new snapshot that supersedes every existing segment
+     */
+    @Override
+    public synchronized void rewrite(Iterable<GameHistoryManager.GameRecord> records) throws IOException {
+        if (!records.iterator().hasNext()) {
+            writeEntry(ENTRY_CLEAR, new byte[0]);
+            return;
+        }
+        HistoryColumns columns = new HistoryColumns();
+        for (GameHistoryManager.GameRecord record : records) {
+            columns.append(record);
+        }
+        long folded = rotate();
+        installSnapshot(writeSnapshot(columns, folded), folded);
+    }
+
+    @Override
+    public String getLocation() {
+        return directory.resolve(SNAPSHOT_FILE).toString();
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                if (segment != null) segment.close();
+            } catch (IOException e) {
+                System.err.println("Error closing history log: " + e.getMessage());
+            }
+        }
+    }
+
+    // Entry layout: payload length, CRC32C of type and payload, type, payload
+    private void writeEntry(byte type, byte[] payload) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(type).put(payload).flip();
+        long before = segment.size();
+        try {
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+        } catch (IOException e) {
+            // Cut off the partial entry, or recovery would stop there and drop every later entry
+            segment.truncate(before);
+            throw e;
+        }
+        if (fsyncOnAppend) {
+            segment.force(false);
+        }
+    }
+
+    // Applies every intact entry of a segment, returning the length of the intact prefix
+    private static long replay(Path file, HistoryColumns columns) throws IOException {
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] header = new byte[ENTRY_HEADER_BYTES];
+            while (true) {
+                if (in.readNBytes(header, 0, ENTRY_HEADER_BYTES) < ENTRY_HEADER_BYTES) break;
+                ByteBuffer fields = ByteBuffer.wrap(header);
+                int length = fields.getInt();
+                int checksum = fields.getInt();
+                byte type = fields.get();
+                if (length < 0 || length > MAX_ENTRY_BYTES) break;
+                byte[] payload = in.readNBytes(length);
+                if (payload.length < length) break;
+                CRC32C crc = new CRC32C();
+                crc.update(type);
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) break;
+
+                apply(type, payload, columns);
+                valid += ENTRY_HEADER_BYTES + length;
+            }
+        }
+        return valid;
+    }
+
+    private static void apply(byte type, byte[] payload, HistoryColumns columns) throws IOException {
+        switch (type) {
+            case ENTRY_ADD -> {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    columns.append(readRecord(in));
+                }
+            }
+            case ENTRY_CLEAR -> columns.clear();
+            default -> throw new IOException("Unknown history log entry type " + type);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, GameHistoryManager.GameRecord record) throws IOException {
+        out.writeLong(record.timestamp);
+        if (record.timestamp == GameHistoryManager.GameRecord.NO_TIMESTAMP) {
+            out.writeUTF(record.getDate());
+        }
+        out.writeUTF(record.mode);
+        out.writeUTF(record.player1);
+        out.writeUTF(record.player2);
+        out.writeInt(record.player1Score);
+        out.writeInt(record.player2Score);
+        out.writeUTF(record.getResult());
+    }
+
+    private static GameHistoryManager.GameRecord readRecord(DataInputStream in) throws IOException {
+        long timestamp = in.readLong();
+        String date = timestamp == GameHistoryManager.GameRecord.NO_TIMESTAMP ? in.readUTF() : null;
+        String mode = in.readUTF();
+        String player1 = in.readUTF();
+        String player2 = in.readUTF();
+        int player1Score = in.readInt();
+        int player2Score = in.readInt();
+        String result = in.readUTF();
+        return date != null
+            ? new GameHistoryManager.GameRecord(date, mode, player1, player2, player1Score, player2Score, result)
+            : new GameHistoryManager.GameRecord(timestamp, mode, player1, player2, player1Score, player2Score, result);
+    }
+
+    // Renames a damaged file so it is kept for inspection but no longer matched as part of the store
+    private static Path moveAside(Path file) throws IOException {
+        Path aside = file.resolveSibling(file.getFileName() + "." + System.currentTimeMillis() + ".bad");
+        Files.move(file, aside);
+        return aside;
+    }
+
+    // Starts a new segment and returns the generation of the one just closed
+    private long rotate() throws IOException {
+        long closed = generation;
+        segment.close();
+        generation++;
+        openSegment();
+        return closed;
+    }
+
+    private void openSegment() throws IOException {
+        segment = FileChannel.open(segmentPath(generation),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Runs on the compactor thread: closed segments never change, so they are read without the lock
+    private void compact(long folded) {
+        long start = System.nanoTime();
+        try {
+            Snapshot base = readSnapshot(directory.resolve(SNAPSHOT_FILE));
+            HistoryColumns columns = base.columns;
+            for (long gen : listSegments()) {
+                if (gen > folded) break;
+                if (gen > base.generation) {
+                    replay(segmentPath(gen), columns);
+                }
+            }
+            Path snapshot = writeSnapshot(columns, folded);
+            synchronized (this) {
+                installSnapshot(snapshot, folded);
+            }
+            System.out.println(String.format("Compacted history log into a snapshot of %d records in %.1f ms",
+                columns.size(), (System.nanoTime() - start) / 1_000_000.0));
+        } catch (IOException e) {
+            System.err.println("Error compacting history log: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    // Moves a written snapshot into place unless a newer one got there first, then drops the segments it covers
+    private void installSnapshot(Path snapshot, long folded) throws IOException {
+        if (folded <= snapshotGeneration) {
+            Files.deleteIfExists(snapshot);
+            return;
+        }
+        Files.move(snapshot, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        snapshotGeneration = folded;
+        for (long gen : listSegments()) {
+            if (gen <= folded) Files.deleteIfExists(segmentPath(gen));
+        }
+    }
+
+    private Path writeSnapshot(HistoryColumns columns, long folded) throws IOException {
+        Path temp = Files.createTempFile(directory, "history_", ".snapshot.tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(folded);
+            columns.writeTo(out);
+            out.flush();
+            channel.force(true); // The snapshot must be durable before the segments it replaces are deleted
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    private static Snapshot readSnapshot(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return new Snapshot(0, new HistoryColumns());
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long generation = readSnapshotHeader(in, file);
+            return new Snapshot(generation, HistoryColumns.readFrom(in, file.toString()));
+        }
+    }
+
+    private static long readSnapshotHeader(DataInputStream in, Path file) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a history snapshot: " + file);
+        }
+        int version = in.readInt();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported history snapshot version " + version + ": " + file);
+        }
+        return in.readLong();
+    }
+
+    // Generations of the segments on disk, oldest first
+    private List<Long> listSegments() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return generations;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private Path segmentPath(long gen) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, gen, SEGMENT_SUFFIX));
+    }
+}